@@ -0,0 +1,268 @@
+package com.example.gaope.pageturning;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+/**
+ * 所有PageTurnView共用的bitmap内存预算，帧缓冲、页面栅格和图片的小块都从这里分配
+ * 每次分配带一个优先级，超出预算时先让使用者释放优先级更低的bitmap：先是缓存的（窗口以外的页、小块），
+ * 再是预取的页，正在显示的不会因为分配而释放。释放之后仍然放不下时，预取的分配被拒绝，正在显示的照常分配。
+ * 系统内存紧张时按onTrimMemory的级别逐级释放，最后连同Glide的BitmapPool一起清空
+ */
+
+public class BitmapBudget implements ComponentCallbacks2 {
+
+    /**
+     * 随时可以重新生成的缓存，最先释放
+     */
+    public static final int PRIORITY_CACHED = 0;
+
+    /**
+     * 当前页前后预取的页
+     */
+    public static final int PRIORITY_PREFETCHED = 1;
+
+    /**
+     * 正在显示的页和帧缓冲，只在onTrimMemory时释放
+     */
+    public static final int PRIORITY_VISIBLE = 2;
+
+    /**
+     * 从预算中分配bitmap的一方，超出预算或者内存紧张时被要求释放
+     */
+    interface Consumer {
+
+        /**
+         * 释放优先级为priority的bitmap，同一优先级中先释放价值低的（比如离当前页远的），
+         * 释放了bytes字节或者没有这个优先级的bitmap时停止，返回释放的字节数。
+         * bytes为TRIM_ALL时是系统内存紧张，要求释放这个优先级的全部。
+         * PRIORITY_VISIBLE只会在UI线程onTrimMemory时要求释放，其它优先级可能在任何线程
+         */
+        long trim(int priority,long bytes);
+    }
+
+    /**
+     * onTrimMemory时要求释放的字节数，表示这个优先级全部释放
+     */
+    static final long TRIM_ALL = Long.MAX_VALUE;
+
+    private static BitmapBudget instance;
+
+    private final BitmapPool bitmapPool;
+
+    /**
+     * 注册和注销时整体替换，遍历时不需要加锁
+     */
+    private volatile Consumer[] consumers = new Consumer[0];
+
+    private long maxBytes;
+
+    private long usedBytes;
+
+    BitmapBudget(BitmapPool bitmapPool,long maxBytes) {
+        this.bitmapPool = bitmapPool;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 进程中唯一的预算，默认是最大堆的四分之一，第一次获取时注册onTrimMemory
+     */
+    public static synchronized BitmapBudget get(Context context){
+        if (instance == null){
+            Context application = context.getApplicationContext();
+            instance = new BitmapBudget(Glide.get(application).getBitmapPool(),Runtime.getRuntime().maxMemory() / 4);
+            application.registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * 设置预算的字节数，变小时马上释放缓存和预取的页，只在UI线程调用
+     */
+    public void setMaxBytes(long maxBytes) {
+        synchronized (this){
+            this.maxBytes = maxBytes;
+        }
+        for (int priority = PRIORITY_CACHED; priority < PRIORITY_VISIBLE; priority++) {
+            long excess = excess(0);
+            if (excess <= 0){
+                break;
+            }
+            trim(priority,excess);
+        }
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 已经分配出去还没有归还的字节数
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 分配一个bitmap，优先从BitmapPool中取，超出预算并且不是PRIORITY_VISIBLE时返回null，
+     * 用完之后调用release归还
+     */
+    Bitmap acquire(int width,int height,Bitmap.Config config,int priority){
+        if (!reserve(bytesOf(width,height,config),priority)){
+            return null;
+        }
+        Bitmap bitmap = bitmapPool.getDirty(width,height,config);
+        if (bitmap == null){
+            bitmap = Bitmap.createBitmap(width,height,config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 计入一个不是acquire分配的bitmap，比如解码时没有使用inBitmap
+     */
+    void adopt(Bitmap bitmap){
+        reserve(bytesOf(bitmap),PRIORITY_VISIBLE);
+    }
+
+    /**
+     * 归还acquire或者adopt的bitmap，放回BitmapPool
+     */
+    void release(Bitmap bitmap){
+        unreserve(bytesOf(bitmap));
+        if (!bitmapPool.put(bitmap)){
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 在预算中占用bytes字节，放不下时先释放优先级更低的，仍然放不下并且不是PRIORITY_VISIBLE时返回false
+     */
+    boolean reserve(long bytes,int priority){
+        //释放时不持有预算的锁，使用者释放时会调用release
+        for (int lower = PRIORITY_CACHED; lower < priority; lower++) {
+            long excess = excess(bytes);
+            if (excess <= 0){
+                break;
+            }
+            trim(lower,excess);
+        }
+        synchronized (this){
+            if (priority < PRIORITY_VISIBLE && usedBytes + bytes > maxBytes){
+                return false;
+            }
+            usedBytes += bytes;
+            return true;
+        }
+    }
+
+    synchronized void unreserve(long bytes){
+        usedBytes -= bytes;
+    }
+
+    void register(Consumer consumer){
+        synchronized (this){
+            Consumer[] old = consumers;
+            for (Consumer registered : old) {
+                if (registered == consumer){
+                    return;
+                }
+            }
+            Consumer[] updated = new Consumer[old.length + 1];
+            System.arraycopy(old,0,updated,0,old.length);
+            updated[old.length] = consumer;
+            consumers = updated;
+        }
+    }
+
+    void unregister(Consumer consumer){
+        synchronized (this){
+            Consumer[] old = consumers;
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] == consumer){
+                    Consumer[] updated = new Consumer[old.length - 1];
+                    System.arraycopy(old,0,updated,0,i);
+                    System.arraycopy(old,i + 1,updated,i,old.length - i - 1);
+                    consumers = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 让所有使用者释放优先级为priority的bitmap，直到释放了bytes字节
+     */
+    long trim(int priority,long bytes){
+        long released = 0;
+        for (Consumer consumer : consumers) {
+            if (released >= bytes){
+                break;
+            }
+            released += consumer.trim(priority,bytes - released);
+        }
+        return released;
+    }
+
+    /**
+     * 释放优先级不高于highest的全部bitmap
+     */
+    private void trimAll(int highest){
+        for (int priority = PRIORITY_CACHED; priority <= highest; priority++) {
+            trim(priority,TRIM_ALL);
+        }
+    }
+
+    private synchronized long excess(long bytes){
+        return usedBytes + bytes - maxBytes;
+    }
+
+    /**
+     * 运行中内存偏紧时先释放缓存，再释放预取的页；界面不可见之后连帧缓冲和显示的页也释放，
+     * 释放的bitmap都回到了BitmapPool，最后让BitmapPool按同样的级别收缩
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN){
+            trimAll(PRIORITY_VISIBLE);
+        }else if (level >= TRIM_MEMORY_RUNNING_LOW){
+            trimAll(PRIORITY_PREFETCHED);
+        }else if (level >= TRIM_MEMORY_RUNNING_MODERATE){
+            trimAll(PRIORITY_CACHED);
+        }
+        bitmapPool.trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimAll(PRIORITY_VISIBLE);
+        bitmapPool.clearMemory();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    static long bytesOf(Bitmap bitmap){
+        return bytesOf(bitmap.getWidth(),bitmap.getHeight(),bitmap.getConfig());
+    }
+
+    static long bytesOf(int width,int height,Bitmap.Config config){
+        return (long) width * height * bytesPerPixel(config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config){
+        if (config == Bitmap.Config.ALPHA_8){
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444){
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.gaope.pageturning;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 从书中某个位置开始顺序读取文字
+ * 位置由BookText决定，可以是字符的下标，也可以是字节的偏移，分页只保存和比较这些位置
+ */
+
+public abstract class BookReader extends Reader {
+
+    /**
+     * 从打开时的位置开始读出count个字符之后，在书中的位置，count不会小于上一次调用时的值
+     */
+    public abstract int position(int count) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.example.gaope.pageturning;
+
+import java.io.IOException;
+
+/**
+ * 书的文字来源，分页时按顺序读取，往回翻到没有缓存的页时从该页的位置重新打开
+ */
+
+public interface BookText {
+
+    /**
+     * 从某个位置开始读取，position为0或者BookReader#position返回的值，由调用方负责关闭
+     */
+    BookReader open(int position) throws IOException;
+
+    /**
+     * 书的内容的标识，用作分页索引的排版条件，内容变化时必须变化，比如文件路径加上长度和修改时间
+     */
+    String fingerprint();
+}
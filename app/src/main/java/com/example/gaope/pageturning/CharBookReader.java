@@ -0,0 +1,48 @@
+package com.example.gaope.pageturning;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 以字符下标作为位置的BookReader，包装一个从头开始的Reader，
+ * 适合不大的书，比如assets中的文字，打开时需要跳过前面所有的字符
+ */
+
+public class CharBookReader extends BookReader {
+
+    private final Reader reader;
+
+    private final int start;
+
+    public CharBookReader(Reader reader,int start) throws IOException {
+        this.reader = reader;
+        this.start = start;
+        int skipped = 0;
+        while (skipped < start){
+            long n = reader.skip(start - skipped);
+            if (n <= 0){
+                //skip不保证跳过，用read确认是否到了结尾
+                if (reader.read() < 0){
+                    throw new IOException("book is shorter than position " + start);
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+    }
+
+    @Override
+    public int position(int count) {
+        return start + count;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        return reader.read(cbuf,off,len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 翻页的几何计算，不依赖Android，可以直接在JVM上测试
+ * 所有标识点的坐标都保存在一个预先分配的float数组中，
+ * 背面C的镜像矩阵和阴影的旋转角度也在计算时原地更新，每次计算都不会分配对象
+ */
+
+class CurlGeometry {
+
+    /**
+     * 手指的触摸点
+     */
+    static final int A = 0;
+
+    /**
+     * 相对于触摸点的边缘点
+     */
+    static final int F = 1;
+
+    /**
+     * 触摸点与边缘点之间的中点
+     */
+    static final int G = 2;
+
+    /**
+     * b,c贝塞尔曲线的控制点e
+     */
+    static final int E = 3;
+
+    /**
+     * j,k贝塞尔曲线的控制点h
+     */
+    static final int H = 4;
+
+    /**
+     * b,c贝塞尔曲线的起点c
+     */
+    static final int C = 5;
+
+    /**
+     * j,k贝塞尔曲线的起点j
+     */
+    static final int J = 6;
+
+    /**
+     * b,c贝塞尔曲线的终点b
+     */
+    static final int B = 7;
+
+    /**
+     * j,k贝塞尔曲线的终点k
+     */
+    static final int K = 8;
+
+    /**
+     * b,c贝塞尔曲线上的点d，通过点d来确定背面的C区域
+     */
+    static final int D = 9;
+
+    /**
+     * j,k贝塞尔曲线上的点i，通过点i来确定背面的C区域
+     */
+    static final int I = 10;
+
+    private static final int POINT_COUNT = 11;
+
+    /**
+     * 接收路径的绘制命令，PageTurnView中直接由android.graphics.Path的子类实现
+     */
+    interface PathSink {
+        void moveTo(float x,float y);
+
+        void lineTo(float x,float y);
+
+        void quadTo(float x1,float y1,float x2,float y2);
+
+        void close();
+    }
+
+    /**
+     * 所有点的坐标，第n个点的x在2n，y在2n+1
+     */
+    private final float[] points = new float[POINT_COUNT * 2];
+
+    /**
+     * 背面C的镜像矩阵，按照android.graphics.Matrix#setValues的顺序排列，
+     * 已经包含了以e为中心的平移
+     */
+    private final float[] reflection = new float[9];
+
+    /**
+     * ef与竖直方向夹角的正弦值
+     */
+    private float sin;
+
+    /**
+     * ef与竖直方向夹角的余弦值
+     */
+    private float cos;
+
+    /**
+     * 阴影的旋转角度，以c为中心旋转
+     */
+    private float shadowDegrees;
+
+    /**
+     * a到f的距离
+     */
+    private float aAndFLength;
+
+    float x(int point){
+        return points[point * 2];
+    }
+
+    float y(int point){
+        return points[point * 2 + 1];
+    }
+
+    void set(int point,float x,float y){
+        points[point * 2] = x;
+        points[point * 2 + 1] = y;
+    }
+
+    float[] points(){
+        return points;
+    }
+
+    float[] reflection(){
+        return reflection;
+    }
+
+    float sin(){
+        return sin;
+    }
+
+    float cos(){
+        return cos;
+    }
+
+    float shadowDegrees(){
+        return shadowDegrees;
+    }
+
+    float aAndFLength(){
+        return aAndFLength;
+    }
+
+    /**
+     * 翻起部分的包围盒，包含所有的点和贝塞尔曲线的控制点，A区域以外的B、C区域都在里面
+     *
+     * @param out left、top、right、bottom
+     */
+    void curlBounds(float[] out){
+        float left = points[0];
+        float top = points[1];
+        float right = left;
+        float bottom = top;
+        for (int i = 2; i < POINT_COUNT * 2; i += 2) {
+            left = Math.min(left,points[i]);
+            right = Math.max(right,points[i]);
+            top = Math.min(top,points[i + 1]);
+            bottom = Math.max(bottom,points[i + 1]);
+        }
+        out[0] = left;
+        out[1] = top;
+        out[2] = right;
+        out[3] = bottom;
+    }
+
+    /**
+     * 计算c.x的正负，只会更新g和e
+     */
+    float calculateCX(float x,float y){
+        float fx = points[F * 2];
+        float fy = points[F * 2 + 1];
+        float gx = (x + fx) / 2;
+        float gy = (y + fy) / 2;
+        float ex = gx - (fy - gy) * (fy - gy) / (fx - gx);
+        set(G,gx,gy);
+        set(E,ex,fy);
+        return ex - (fx - ex) / 2;
+    }
+
+    /**
+     * 计算临界的a点的坐标
+     */
+    void calculateCrisisA(float width){
+        float ax = points[A * 2];
+        float ay = points[A * 2 + 1];
+        float fx = points[F * 2];
+        float fy = points[F * 2 + 1];
+
+        float w0 = width - points[C * 2];
+
+        float w1 = Math.abs(fx - ax);
+        float w2 = width * w1 / w0;
+
+        float h1 = Math.abs(fy - ay);
+        float h2 = w2 * h1 / w1;
+
+        set(A,Math.abs(fx - w2),Math.abs(fy - h2));
+    }
+
+    /**
+     * 根据a和f计算各个点的坐标，以及镜像矩阵和阴影角度
+     */
+    void calculate(){
+        float ax = points[A * 2];
+        float ay = points[A * 2 + 1];
+        float fx = points[F * 2];
+        float fy = points[F * 2 + 1];
+
+        float gx = (ax + fx) / 2;
+        float gy = (ay + fy) / 2;
+        set(G,gx,gy);
+
+        float ex = gx - (fy - gy) * (fy - gy) / (fx - gx);
+        float ey = fy;
+        set(E,ex,ey);
+
+        float hx = fx;
+        float hy = gy - (fx - gx) * (fx - gx) / (fy - gy);
+        set(H,hx,hy);
+
+        float cx = ex - (fx - ex) / 2;
+        float cy = fy;
+        set(C,cx,cy);
+
+        float jx = fx;
+        float jy = hy - (fy - hy) / 2;
+        set(J,jx,jy);
+
+        intersect(B,ax,ay,ex,ey,cx,cy,jx,jy);
+        intersect(K,ax,ay,hx,hy,cx,cy,jx,jy);
+
+        set(D,((x(B) + cx) / 2 + ex) / 2,((y(B) + cy) / 2 + ey) / 2);
+        set(I,((x(K) + jx) / 2 + hx) / 2,((y(K) + jy) / 2 + hy) / 2);
+
+        aAndFLength = (float) Math.hypot(ax - fx,ay - fy);
+        shadowDegrees = (float) Math.toDegrees(Math.atan2(ex - fx,hy - fy));
+
+        float ef = (float) Math.hypot(fx - ex,hy - fy);
+        sin = (fx - ex) / ef;
+        cos = (hy - fy) / ef;
+
+        //以e为中心的镜像，等同于先平移-e，再镜像，最后平移e
+        float m0 = -(1 - 2 * sin * sin);
+        float m1 = 2 * sin * cos;
+        float m3 = 2 * sin * cos;
+        float m4 = 1 - 2 * sin * sin;
+        reflection[0] = m0;
+        reflection[1] = m1;
+        reflection[2] = ex - (m0 * ex + m1 * ey);
+        reflection[3] = m3;
+        reflection[4] = m4;
+        reflection[5] = ey - (m3 * ex + m4 * ey);
+        reflection[6] = 0;
+        reflection[7] = 0;
+        reflection[8] = 1.0f;
+    }
+
+    /**
+     * 快速翻阅时按当前页翻过去的比例计算各点，f在右下角，a沿着和翻过一页的动画一样的弧线从右下角移到左边一个宽度的位置。
+     * 和松手后的动画一样直接用a计算，不把c点限制在左边以内，c.x随比例单调减小
+     */
+    void calculateScrub(float fraction,float width,float height){
+        set(F,width,height);
+        set(A,width - 1 - fraction * (width * 2 - 1),height - 1 - (float) Math.sin(Math.PI * fraction) * height / 4);
+        calculate();
+    }
+
+    /**
+     * f点在右上角时当前页A区域的轮廓
+     */
+    void buildRegionARightTop(PathSink path,float width,float height){
+        path.moveTo(0,0);
+        path.lineTo(x(C),y(C));
+        path.quadTo(x(E),y(E),x(B),y(B));
+        path.lineTo(x(A),y(A));
+        path.lineTo(x(K),y(K));
+        path.quadTo(x(H),y(H),x(J),y(J));
+        path.lineTo(width,height);
+        path.lineTo(0,height);
+        path.close();
+    }
+
+    /**
+     * f点在右下角时当前页A区域的轮廓
+     */
+    void buildRegionARightBottom(PathSink path,float width,float height){
+        path.moveTo(0,0);
+        path.lineTo(0,height);
+        path.lineTo(x(C),y(C));
+        path.quadTo(x(E),y(E),x(B),y(B));
+        path.lineTo(x(A),y(A));
+        path.lineTo(x(K),y(K));
+        path.quadTo(x(H),y(H),x(J),y(J));
+        path.lineTo(width,0);
+        path.close();
+    }
+
+    /**
+     * 背面C区域的轮廓
+     */
+    void buildRegionC(PathSink path){
+        path.moveTo(x(D),y(D));
+        path.lineTo(x(I),y(I));
+        path.lineTo(x(A),y(A));
+        path.lineTo(x(D),y(D));
+    }
+
+    /**
+     * 求直线(x1,y1)(x2,y2)与直线(x3,y3)(x4,y4)的交点，结果保存到point
+     */
+    private void intersect(int point,float x1,float y1,float x2,float y2,float x3,float y3,float x4,float y4){
+        float k1 = (y1 - y2) / (x1 - x2);
+        float k2 = (y3 - y4) / (x3 - x4);
+
+        float b1 = (y1 * x2 - y2 * x1) / (x2 - x1);
+        float b2 = (y3 * x4 - y4 * x3) / (x4 - x3);
+
+        float x = (b2 - b1) / (k1 - k2);
+        float y = k1 * x + b1;
+        set(point,x,y);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.gaope.pageturning;
+
+import static com.example.gaope.pageturning.CurlGeometry.C;
+import static com.example.gaope.pageturning.CurlGeometry.F;
+import static com.example.gaope.pageturning.CurlGeometry.J;
+
+/**
+ * 圆柱形翻页的网格，配合Canvas.drawBitmapMesh使用，不依赖Android
+ * 以CurlGeometry中c、j两点所在的直线为卷曲的起点，直线靠f一侧的页面卷在一个圆柱上，
+ * 超过半个圆周的部分平铺在背面。圆柱的半径让页角f正好落在触摸点a上，
+ * 直线另一侧平铺的部分由调用方直接绘制，网格中这些顶点投影到直线上，不会覆盖任何像素。
+ * 顶点和颜色数组在两帧之间复用，只有网格密度变化时才重新分配
+ */
+
+class CurlMesh {
+
+    /**
+     * 圆柱正面最亮处和边缘的亮度
+     */
+    private static final float FRONT_LIGHT = 1.0f;
+
+    private static final float FRONT_DARK = 0.55f;
+
+    /**
+     * 背面的亮度
+     */
+    private static final float BACK_LIGHT = 0.8f;
+
+    private int columns;
+
+    private int rows;
+
+    /**
+     * 网格顶点，drawBitmapMesh的verts参数
+     */
+    private float[] verts;
+
+    /**
+     * 每个顶点的颜色，drawBitmapMesh的colors参数，用来表现圆柱的明暗
+     */
+    private int[] colors;
+
+    /**
+     * 卷曲起点所在直线上的一点和方向
+     */
+    private float lineX;
+
+    private float lineY;
+
+    private float lineDx;
+
+    private float lineDy;
+
+    /**
+     * 直线的法线，指向页角f
+     */
+    private float normalX;
+
+    private float normalY;
+
+    CurlMesh(int columns,int rows) {
+        setDensity(columns,rows);
+    }
+
+    void setDensity(int columns,int rows){
+        if (columns < 1 || rows < 1){
+            throw new IllegalArgumentException("mesh density must be positive: " + columns + "x" + rows);
+        }
+        if (this.columns == columns && this.rows == rows){
+            return;
+        }
+        this.columns = columns;
+        this.rows = rows;
+        int count = (columns + 1) * (rows + 1);
+        verts = new float[count * 2];
+        colors = new int[count];
+    }
+
+    int columns(){
+        return columns;
+    }
+
+    int rows(){
+        return rows;
+    }
+
+    float[] verts(){
+        return verts;
+    }
+
+    int[] colors(){
+        return colors;
+    }
+
+    /**
+     * 根据当前的几何计算网格
+     *
+     * @param width 页面的宽
+     * @param height 页面的高
+     */
+    void update(CurlGeometry curl,float width,float height){
+        float cx = curl.x(C);
+        float cy = curl.y(C);
+        float dx = curl.x(J) - cx;
+        float dy = curl.y(J) - cy;
+        float length = (float) Math.hypot(dx,dy);
+        dx /= length;
+        dy /= length;
+        float nx = dy;
+        float ny = -dx;
+        //法线指向页角f
+        float cornerDistance = (curl.x(F) - cx) * nx + (curl.y(F) - cy) * ny;
+        if (cornerDistance < 0){
+            nx = -nx;
+            ny = -ny;
+            cornerDistance = -cornerDistance;
+        }
+        lineX = cx;
+        lineY = cy;
+        lineDx = dx;
+        lineDy = dy;
+        normalX = nx;
+        normalY = ny;
+
+        //平铺的背面比直线超出cornerDistance/3时，页角正好落在a上，见CurlGeometry中c、e的关系
+        float radius = (float) (2 * cornerDistance / (3 * Math.PI));
+        float halfCircle = (float) (Math.PI * radius);
+
+        int index = 0;
+        for (int row = 0; row <= rows; row++) {
+            float y = height * row / rows;
+            for (int column = 0; column <= columns; column++) {
+                float x = width * column / columns;
+                float distance = (x - cx) * nx + (y - cy) * ny;
+                float projected;
+                float light;
+                if (distance <= 0 || radius <= 0){
+                    //不卷曲的部分投影到直线上
+                    projected = 0;
+                    light = FRONT_LIGHT;
+                }else if (distance < halfCircle){
+                    double angle = distance / radius;
+                    projected = (float) (radius * Math.sin(angle));
+                    light = angle < Math.PI / 2
+                            ? FRONT_DARK + (FRONT_LIGHT - FRONT_DARK) * (float) Math.cos(angle)
+                            : BACK_LIGHT * (float) -Math.cos(angle) + FRONT_DARK * (1 - (float) -Math.cos(angle));
+                }else {
+                    projected = halfCircle - distance;
+                    light = BACK_LIGHT;
+                }
+                float offset = distance - projected;
+                verts[index * 2] = x - nx * offset;
+                verts[index * 2 + 1] = y - ny * offset;
+                int gray = (int) (light * 255);
+                colors[index] = 0xff000000 | gray << 16 | gray << 8 | gray;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * 不卷曲的部分，一个足够大的四边形，调用方用来裁剪
+     *
+     * @param size 四边形的边长，不小于页面的对角线
+     */
+    void buildFlatRegion(CurlGeometry.PathSink path,float size){
+        float ux = lineDx * size;
+        float uy = lineDy * size;
+        float vx = -normalX * size;
+        float vy = -normalY * size;
+        path.moveTo(lineX - ux,lineY - uy);
+        path.lineTo(lineX + ux,lineY + uy);
+        path.lineTo(lineX + ux + vx,lineY + uy + vy);
+        path.lineTo(lineX - ux + vx,lineY - uy + vy);
+        path.close();
+    }
+}
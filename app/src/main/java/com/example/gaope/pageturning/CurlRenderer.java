@@ -0,0 +1,30 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Canvas;
+import android.graphics.Path;
+
+/**
+ * 翻页的绘制方式
+ * PageTurnView负责几何计算和页面内容，A、B、C三个区域具体怎么画出来由实现决定
+ */
+
+interface CurlRenderer {
+
+    /**
+     * 是否需要先画到帧缓冲上，再整体贴到View的Canvas上
+     */
+    boolean usesFrameBuffer();
+
+    /**
+     * 停在当前页时的绘制
+     */
+    void drawRest(Canvas canvas);
+
+    /**
+     * 翻页过程中的绘制
+     *
+     * @param pathA 当前页A区域，已经按照f点的位置构建好
+     * @param pathC 背面C区域
+     */
+    void drawCurl(Canvas canvas,Path pathA,Path pathC);
+}
@@ -0,0 +1,203 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+/**
+ * B、C区域的阴影
+ * 渐变只在创建时生成一次，是0到1的单位长度上的LinearGradient，
+ * 每一帧只更新shader的局部矩阵，把单位长度拉伸到阴影矩形的宽度，不再每一帧创建GradientDrawable和颜色数组。
+ * 阴影矩形以c为中心旋转，高度是View的对角线，超出区域的部分会被裁剪掉
+ */
+
+class CurlShadow {
+
+    /**
+     * 不画阴影
+     */
+    static final int QUALITY_NONE = 0;
+
+    /**
+     * 半透明的纯色阴影，不需要shader
+     */
+    static final int QUALITY_FLAT = 1;
+
+    /**
+     * 渐变阴影
+     */
+    static final int QUALITY_GRADIENT = 2;
+
+    /**
+     * B阴影的颜色，深色端到浅色端
+     */
+    private static final int B_DEEP = 0xff111111;
+
+    private static final int B_LIGHT = 0x00111111;
+
+    /**
+     * C阴影的颜色，浅色端到深色端
+     */
+    private static final int C_LIGHT = 0x00333333;
+
+    private static final int C_DEEP = 0xff111111;
+
+    /**
+     * 纯色阴影的颜色，大约是渐变的平均值
+     */
+    private static final int B_FLAT = 0x44111111;
+
+    private static final int C_FLAT = 0x66111111;
+
+    /**
+     * C阴影深色端和浅色端的偏移值
+     */
+    private static final int C_DEEP_OFFSET = 1;
+
+    private static final int C_LIGHT_OFFSET = -30;
+
+    private final Paint bGradientPaint;
+
+    private final Paint cGradientPaint;
+
+    private final Paint bFlatPaint;
+
+    private final Paint cFlatPaint;
+
+    /**
+     * 复用的shader局部矩阵
+     */
+    private final Matrix shaderMatrix = new Matrix();
+
+    private int quality = QUALITY_GRADIENT;
+
+    /**
+     * 降级绘制时临时不画阴影，不改变设置的质量
+     */
+    private boolean suppressed;
+
+    /**
+     * View的对角线长度，在尺寸变化时更新
+     */
+    private float diagonalLength;
+
+    CurlShadow() {
+        bGradientPaint = gradientPaint(B_DEEP,B_LIGHT);
+        cGradientPaint = gradientPaint(C_LIGHT,C_DEEP);
+        bFlatPaint = flatPaint(B_FLAT);
+        cFlatPaint = flatPaint(C_FLAT);
+    }
+
+    void setQuality(int quality){
+        if (quality < QUALITY_NONE || quality > QUALITY_GRADIENT){
+            throw new IllegalArgumentException("unknown shadow quality " + quality);
+        }
+        this.quality = quality;
+    }
+
+    int getQuality(){
+        return quality;
+    }
+
+    void setSuppressed(boolean suppressed){
+        this.suppressed = suppressed;
+    }
+
+    void resize(int width,int height){
+        diagonalLength = (float) Math.hypot(width,height);
+    }
+
+    /**
+     * 下一页B靠近c的阴影，宽度是af的四分之一，深色端在c
+     */
+    void drawB(Canvas canvas,CurlGeometry curl){
+        if (quality == QUALITY_NONE || suppressed){
+            return;
+        }
+        //a到f的距离
+        float aAndFLength = curl.aAndFLength();
+        float cx = curl.x(CurlGeometry.C);
+        float rotateDegress = curl.shadowDegrees();
+        if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.B_SHADOW,aAndFLength,rotateDegress);
+        //f点在右上角，从左到右渐变，在右下角时从右到左
+        float end = curl.y(CurlGeometry.F) == 0 ? cx + aAndFLength / 4 : cx - aAndFLength / 4;
+        drawStrip(canvas,curl,bGradientPaint,bFlatPaint,cx,end);
+    }
+
+    /**
+     * 背面C的阴影，宽度是ce、jh中点到控制点的较小距离，深色端在折痕一侧
+     */
+    void drawC(Canvas canvas,CurlGeometry curl){
+        if (quality == QUALITY_NONE || suppressed){
+            return;
+        }
+        float cx = curl.x(CurlGeometry.C);
+        int midpoint_ce = (int) (cx + curl.x(CurlGeometry.E)) / 2;//ce中点
+        int midpoint_jh = (int) (curl.y(CurlGeometry.J) + curl.y(CurlGeometry.H)) / 2;//jh中点
+        //中点到控制点的最小值
+        float minDisToControlPoint = Math.min(Math.abs(midpoint_ce - curl.x(CurlGeometry.E)),
+                Math.abs(midpoint_jh - curl.y(CurlGeometry.H)));
+
+        //渐变的起点是浅色端，终点是深色端
+        int start;
+        int end;
+        if (curl.y(CurlGeometry.F) == 0){
+            //f点在右上角，借助偏移量让矩形右移
+            start = (int) cx - C_LIGHT_OFFSET;
+            end = (int) (cx + minDisToControlPoint + C_DEEP_OFFSET);
+            if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.C_SHADOW,start,end);
+        }else {
+            //f点在右下角，借助偏移量让矩形左移
+            start = (int) (cx + C_LIGHT_OFFSET);
+            end = (int) (cx - minDisToControlPoint - C_DEEP_OFFSET);
+            if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.C_SHADOW,end,start);
+        }
+        if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.C_SHADOW_ROTATE,cx,curl.shadowDegrees());
+        //偏移之后矩形可能已经翻转，这时不画
+        if ((end - start) * (start - cx) <= 0){
+            return;
+        }
+        drawStrip(canvas,curl,cGradientPaint,cFlatPaint,start,end);
+    }
+
+    /**
+     * 以c为中心旋转后，画x从start到end、从c向下一条对角线长的矩形，渐变的第一个颜色在start
+     */
+    private void drawStrip(Canvas canvas,CurlGeometry curl,Paint gradientPaint,Paint flatPaint,float start,float end){
+        if (start == end){
+            return;
+        }
+        Paint paint;
+        if (quality == QUALITY_GRADIENT){
+            //单位长度的渐变拉伸到start和end之间，end在左边时是镜像
+            shaderMatrix.setScale(end - start,1);
+            shaderMatrix.postTranslate(start,0);
+            gradientPaint.getShader().setLocalMatrix(shaderMatrix);
+            paint = gradientPaint;
+        }else {
+            paint = flatPaint;
+        }
+        float cx = curl.x(CurlGeometry.C);
+        float cy = curl.y(CurlGeometry.C);
+        canvas.save();
+        canvas.rotate(curl.shadowDegrees(),cx,cy);
+        canvas.drawRect(Math.min(start,end),cy,Math.max(start,end),cy + diagonalLength,paint);
+        canvas.restore();
+    }
+
+    private static Paint gradientPaint(int from,int to){
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setShader(new LinearGradient(0,0,1,0,from,to,Shader.TileMode.CLAMP));
+        return paint;
+    }
+
+    private static Paint flatPaint(int color){
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(color);
+        return paint;
+    }
+}
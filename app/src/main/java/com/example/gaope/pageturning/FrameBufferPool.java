@@ -0,0 +1,146 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * PageTurnView的帧缓冲池，页面内容的栅格由PageRasterCache管理
+ * 缓冲区在onSizeChanged时按View的尺寸分配，翻页过程中每一帧都重复使用，
+ * 在onDetachedFromWindow时归还给BitmapBudget，这样拖动时不会再有bitmap的分配。
+ * 缓冲区按正在显示的优先级分配，只在界面不可见时由onTrimMemory释放
+ */
+
+class FrameBufferPool {
+
+    /**
+     * 合成整帧的缓冲区
+     */
+    static final int FRAME = 0;
+
+    /**
+     * 网格绘制时当前页的贴图，背景和文字合成在一起，不透明
+     */
+    static final int MESH_TEXTURE = 1;
+
+    /**
+     * 软件绘制B、C区域时的离屏缓冲，每次只使用左上角和区域包围盒一样大的部分
+     */
+    static final int REGION = 2;
+
+    /**
+     * 降级绘制时的整帧缓冲，长宽都是View的一半，不透明
+     */
+    static final int LOD_FRAME = 3;
+
+    private static final int SLOT_COUNT = 4;
+
+    /**
+     * 降级绘制时长宽缩小的倍数
+     */
+    static final int LOD_DIVISOR = 2;
+
+    /**
+     * 每个缓冲区的格式
+     */
+    private static final Bitmap.Config[] CONFIGS = {
+            Bitmap.Config.ARGB_8888,
+            Bitmap.Config.RGB_565,
+            Bitmap.Config.ARGB_8888,
+            Bitmap.Config.RGB_565
+    };
+
+    /**
+     * 每个缓冲区的长宽是View的几分之一
+     */
+    private static final int[] DIVISORS = {
+            1,
+            1,
+            1,
+            LOD_DIVISOR
+    };
+
+    /**
+     * 尺寸变化或者释放时旧的bitmap还回去，分配时优先从BitmapPool中取
+     */
+    private final BitmapBudget budget;
+
+    private final Bitmap[] bitmaps;
+
+    private final Canvas[] canvases;
+
+    private int width;
+
+    private int height;
+
+    FrameBufferPool(BitmapBudget budget) {
+        this.budget = budget;
+        bitmaps = new Bitmap[SLOT_COUNT];
+        canvases = new Canvas[SLOT_COUNT];
+    }
+
+    /**
+     * View尺寸变化时调用，已经分配的缓冲区尺寸不对的放回BitmapPool，下次使用时重新获取
+     */
+    void resize(int width,int height){
+        if (this.width == width && this.height == height){
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            recycle(slot);
+        }
+    }
+
+    /**
+     * 获取某个缓冲区的Canvas，只有第一次使用时才会分配bitmap
+     */
+    Canvas obtainCanvas(int slot){
+        if (bitmaps[slot] == null){
+            int slotWidth = Math.max(1,width / DIVISORS[slot]);
+            int slotHeight = Math.max(1,height / DIVISORS[slot]);
+            Bitmap bitmap = budget.acquire(slotWidth,slotHeight,CONFIGS[slot],BitmapBudget.PRIORITY_VISIBLE);
+            bitmaps[slot] = bitmap;
+            if (canvases[slot] == null){
+                canvases[slot] = new Canvas(bitmap);
+            }else {
+                canvases[slot].setBitmap(bitmap);
+            }
+        }
+        return canvases[slot];
+    }
+
+    /**
+     * 获取某个缓冲区的bitmap，需要先调用obtainCanvas
+     */
+    Bitmap getBitmap(int slot){
+        return bitmaps[slot];
+    }
+
+    boolean isReady(){
+        return width > 0 && height > 0;
+    }
+
+    /**
+     * 把所有缓冲区归还给BitmapBudget，返回释放的字节数
+     */
+    long release(){
+        long released = 0;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            released += recycle(slot);
+        }
+        return released;
+    }
+
+    private long recycle(int slot){
+        Bitmap bitmap = bitmaps[slot];
+        if (bitmap == null){
+            return 0;
+        }
+        canvases[slot].setBitmap(null);
+        bitmaps[slot] = null;
+        long bytes = BitmapBudget.bytesOf(bitmap);
+        budget.release(bitmap);
+        return bytes;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.gaope.pageturning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 一次或多次翻页手势的触摸记录，不依赖Android
+ * PageTurnView#setGestureLog开启后，每个MotionEvent按事件记录动作和其中的全部采样（历史采样在前，当前采样在最后），
+ * 回放时按同样的分批重新构造事件。
+ * 文件格式：魔数、版本、名称、事件数，每个事件是动作（包括指针下标，varint）、采样数和采样，
+ * 采样的时间（毫秒）和坐标（1/8像素）都是和上一个采样之差的zigzag varint，一个采样通常只占三四个字节
+ */
+
+public class GestureLog {
+
+    private static final int MAGIC = 0x47535452;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 坐标保存的精度，1/8像素
+     */
+    private static final float COORDINATE_SCALE = 8f;
+
+    private final String name;
+
+    private int[] actions = new int[16];
+
+    /**
+     * 第i个事件的采样从eventStarts[i]开始，到eventStarts[i + 1]结束
+     */
+    private int[] eventStarts = new int[17];
+
+    private int eventCount;
+
+    private long[] times = new long[64];
+
+    private float[] xs = new float[64];
+
+    private float[] ys = new float[64];
+
+    private int sampleCount;
+
+    public GestureLog(String name) {
+        this.name = name;
+    }
+
+    public String name(){
+        return name;
+    }
+
+    /**
+     * 开始记录一个事件，之后用addSample按时间顺序添加它的采样。
+     * action是MotionEvent#getAction()，包括ACTION_POINTER_DOWN等的指针下标
+     */
+    public void beginEvent(int action){
+        if (eventCount == actions.length){
+            actions = Arrays.copyOf(actions,eventCount * 2);
+            eventStarts = Arrays.copyOf(eventStarts,eventCount * 2 + 1);
+        }
+        actions[eventCount] = action;
+        eventCount++;
+        eventStarts[eventCount] = sampleCount;
+    }
+
+    public void addSample(long timeMillis,float x,float y){
+        if (eventCount == 0){
+            throw new IllegalStateException("addSample before beginEvent");
+        }
+        if (sampleCount == times.length){
+            times = Arrays.copyOf(times,sampleCount * 2);
+            xs = Arrays.copyOf(xs,sampleCount * 2);
+            ys = Arrays.copyOf(ys,sampleCount * 2);
+        }
+        times[sampleCount] = timeMillis;
+        xs[sampleCount] = x;
+        ys[sampleCount] = y;
+        sampleCount++;
+        eventStarts[eventCount] = sampleCount;
+    }
+
+    public int eventCount(){
+        return eventCount;
+    }
+
+    public int action(int event){
+        return actions[event];
+    }
+
+    /**
+     * 某个事件的采样下标范围，最后一个是事件本身的位置，前面的是历史采样
+     */
+    public int sampleStart(int event){
+        return eventStarts[event];
+    }
+
+    public int sampleEnd(int event){
+        return eventStarts[event + 1];
+    }
+
+    public int sampleCount(){
+        return sampleCount;
+    }
+
+    public long time(int sample){
+        return times[sample];
+    }
+
+    public float x(int sample){
+        return xs[sample];
+    }
+
+    public float y(int sample){
+        return ys[sample];
+    }
+
+    /**
+     * 保存到文件，时间从第一个采样开始计
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(name);
+            writeVarint(out,eventCount);
+            long lastTime = sampleCount > 0 ? times[0] : 0;
+            int lastX = 0;
+            int lastY = 0;
+            for (int event = 0; event < eventCount; event++) {
+                writeVarint(out,actions[event]);
+                writeVarint(out,sampleEnd(event) - sampleStart(event));
+                for (int i = sampleStart(event); i < sampleEnd(event); i++) {
+                    int x = Math.round(xs[i] * COORDINATE_SCALE);
+                    int y = Math.round(ys[i] * COORDINATE_SCALE);
+                    writeVarint(out,zigzag((int) (times[i] - lastTime)));
+                    writeVarint(out,zigzag(x - lastX));
+                    writeVarint(out,zigzag(y - lastY));
+                    lastTime = times[i];
+                    lastX = x;
+                    lastY = y;
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 从文件读取，格式不对时抛出IOException
+     */
+    public static GestureLog read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION){
+                throw new IOException(file + " is not a gesture log");
+            }
+            GestureLog log = new GestureLog(in.readUTF());
+            int events = readVarint(in);
+            long time = 0;
+            int x = 0;
+            int y = 0;
+            for (int event = 0; event < events; event++) {
+                log.beginEvent(readVarint(in));
+                int samples = readVarint(in);
+                for (int i = 0; i < samples; i++) {
+                    time += unzigzag(readVarint(in));
+                    x += unzigzag(readVarint(in));
+                    y += unzigzag(readVarint(in));
+                    log.addSample(time,x / COORDINATE_SCALE,y / COORDINATE_SCALE);
+                }
+            }
+            return log;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int zigzag(int value){
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out,int value) throws IOException {
+        while ((value & ~0x7f) != 0){
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
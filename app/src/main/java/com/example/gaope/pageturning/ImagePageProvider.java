@@ -0,0 +1,373 @@
+package com.example.gaope.pageturning;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 显示图片的PageProvider，适合漫画和扫描的书页，一页可能有4000×6000
+ * 不解码整张图：用BitmapRegionDecoder按inSampleSize缩小到刚好不小于View上显示的大小，再切成小块分别解码，
+ * 小块保存在有大小上限的缓存中，bitmap从BitmapBudget分配并通过inBitmap重复使用，超出预算时最先被释放。
+ * 排版线程解码这一页的小块，栅格化线程把它们缩放画到PageHolder上，翻页时直接使用PageHolder的栅格，
+ * 内存中不会有原始尺寸的图片
+ */
+
+public class ImagePageProvider extends PageProvider {
+
+    private static final String TAG = "ImagePageProvider";
+
+    /**
+     * 小块解码后的边长
+     */
+    static final int TILE_SIZE = 512;
+
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+
+    /**
+     * 图片的来源
+     */
+    public interface Source {
+
+        int getCount();
+
+        /**
+         * 打开第page页的图片，由调用者关闭
+         */
+        InputStream open(int page) throws IOException;
+    }
+
+    private final Source source;
+
+    private final BitmapBudget budget;
+
+    private final TileCache tiles;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public ImagePageProvider(Context context,Source source) {
+        this.source = source;
+        budget = BitmapBudget.get(context);
+        tiles = new TileCache((int) Math.max(Runtime.getRuntime().maxMemory() / 16,TILE_BYTES * 2));
+    }
+
+    /**
+     * 按顺序显示这些图片文件
+     */
+    public static Source files(final File... files){
+        return new Source() {
+            @Override
+            public int getCount() {
+                return files.length;
+            }
+
+            @Override
+            public InputStream open(int page) throws IOException {
+                return new FileInputStream(files[page]);
+            }
+        };
+    }
+
+    @Override
+    public int getPageCount() {
+        return source.getCount();
+    }
+
+    @Override
+    public PageHolder onCreatePageHolder() {
+        return new ImagePageHolder();
+    }
+
+    /**
+     * 打开这一页，根据holder的尺寸选择inSampleSize，解码还没有缓存的小块
+     */
+    @Override
+    public void onPreparePage(PageHolder holder, int page) {
+        ImagePageHolder imageHolder = (ImagePageHolder) holder;
+        imageHolder.close();
+        InputStream in = null;
+        try {
+            in = source.open(page);
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in,false);
+            imageHolder.decoder = decoder;
+            imageHolder.sampleSize = sampleSize(decoder.getWidth(),decoder.getHeight(),holder.getWidth(),holder.getHeight());
+        } catch (IOException e) {
+            Log.e(TAG,"failed to open page " + page,e);
+            return;
+        } finally {
+            closeQuietly(in);
+        }
+        int columns = imageHolder.columns();
+        int rows = imageHolder.rows();
+        //缓存放不下一整页时预先解码的小块会在绑定之前被挤出去，留给绑定时边解码边画
+        if ((long) columns * rows * TILE_BYTES > tiles.maxSize()){
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                long key = tileKey(page,imageHolder.sampleSize,row * columns + column);
+                Tile tile = tiles.acquire(key);
+                if (tile == null){
+                    tile = decodeTile(imageHolder,column,row);
+                    if (tile != null){
+                        tiles.add(key,tile);
+                    }
+                }
+                if (tile != null){
+                    tiles.release(tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把小块缩放画到holder上，图片居中并保持比例，准备之后被挤出缓存的小块重新解码
+     */
+    @Override
+    public void onBindPage(PageHolder holder, int page) {
+        ImagePageHolder imageHolder = (ImagePageHolder) holder;
+        BitmapRegionDecoder decoder = imageHolder.decoder;
+        if (decoder == null){
+            return;
+        }
+        Canvas canvas = holder.getCanvas();
+        int imageWidth = decoder.getWidth();
+        int imageHeight = decoder.getHeight();
+        float scale = Math.min((float) holder.getWidth() / imageWidth,(float) holder.getHeight() / imageHeight);
+        float left = (holder.getWidth() - imageWidth * scale) / 2;
+        float top = (holder.getHeight() - imageHeight * scale) / 2;
+        int columns = imageHolder.columns();
+        int rows = imageHolder.rows();
+        RectF dest = imageHolder.dest;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                long key = tileKey(page,imageHolder.sampleSize,row * columns + column);
+                Tile tile = tiles.acquire(key);
+                if (tile == null){
+                    tile = decodeTile(imageHolder,column,row);
+                    if (tile == null){
+                        continue;
+                    }
+                    tiles.add(key,tile);
+                }
+                Rect region = tile.region;
+                dest.set(left + region.left * scale,top + region.top * scale,
+                        left + region.right * scale,top + region.bottom * scale);
+                canvas.drawBitmap(tile.bitmap,tile.source,dest,paint);
+                tiles.release(tile);
+            }
+        }
+        imageHolder.close();
+    }
+
+    /**
+     * 准备之后没有绑定时关闭这一页的解码器
+     */
+    @Override
+    public void onDiscardPreparedPage(PageHolder holder, int page) {
+        ((ImagePageHolder) holder).close();
+    }
+
+    /**
+     * 清空小块的缓存，比如内存不足时
+     */
+    public void clearTiles(){
+        tiles.evictAll();
+    }
+
+    @Override
+    BitmapBudget.Consumer getBitmapConsumer() {
+        return tiles;
+    }
+
+    /**
+     * 解码一个小块，返回时已经被当前线程持有
+     */
+    private Tile decodeTile(ImagePageHolder holder,int column,int row){
+        BitmapRegionDecoder decoder = holder.decoder;
+        int span = TILE_SIZE * holder.sampleSize;
+        Tile tile = new Tile();
+        tile.region.set(column * span,row * span,
+                Math.min((column + 1) * span,decoder.getWidth()),Math.min((row + 1) * span,decoder.getHeight()));
+        //绑定一页必须用到的小块不会被拒绝，放进缓存之后是最先释放的
+        Bitmap bitmap = budget.acquire(TILE_SIZE,TILE_SIZE, Bitmap.Config.ARGB_8888,BitmapBudget.PRIORITY_VISIBLE);
+        BitmapFactory.Options options = holder.options;
+        options.inSampleSize = holder.sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        //边缘的小块比TILE_SIZE小，只用到bitmap的左上角
+        options.inBitmap = bitmap;
+        Bitmap decoded;
+        try {
+            decoded = decoder.decodeRegion(tile.region,options);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG,"failed to decode tile " + tile.region,e);
+            decoded = null;
+        }
+        options.inBitmap = null;
+        if (decoded != bitmap){
+            budget.release(bitmap);
+            if (decoded == null){
+                return null;
+            }
+            budget.adopt(decoded);
+        }
+        tile.bitmap = decoded;
+        tile.source.set(0,0,divideCeil(tile.region.width(),holder.sampleSize),divideCeil(tile.region.height(),holder.sampleSize));
+        tile.pins = 1;
+        return tile;
+    }
+
+    /**
+     * 最大的2的幂，按它缩小之后的图片仍然不小于按比例缩放到View中的大小
+     */
+    static int sampleSize(int imageWidth,int imageHeight,int viewWidth,int viewHeight){
+        if (imageWidth <= 0 || imageHeight <= 0 || viewWidth <= 0 || viewHeight <= 0){
+            return 1;
+        }
+        float scale = Math.min((float) viewWidth / imageWidth,(float) viewHeight / imageHeight);
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1){
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    static long tileKey(int page,int sampleSize,int tile){
+        return ((long) page << 32) | ((long) Integer.numberOfTrailingZeros(sampleSize) << 24) | tile;
+    }
+
+    private static int divideCeil(int value,int divisor){
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static void closeQuietly(InputStream in){
+        if (in != null){
+            try {
+                in.close();
+            } catch (IOException e) {
+                Log.w(TAG,"failed to close page",e);
+            }
+        }
+    }
+
+    /**
+     * 一个解码好的小块，region是在原图中的范围，source是在bitmap中的范围
+     */
+    private static class Tile {
+        final Rect region = new Rect();
+        final Rect source = new Rect();
+        Bitmap bitmap;
+
+        /**
+         * 正在使用这个小块的线程数，被挤出缓存时等到没有线程使用才归还bitmap
+         */
+        int pins;
+        boolean evicted;
+    }
+
+    /**
+     * 小块的LRU缓存，排版线程、栅格化线程和UI线程都会使用，小块都是缓存的优先级
+     */
+    private class TileCache extends LruCache<Long,Tile> implements BitmapBudget.Consumer {
+
+        TileCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        /**
+         * 取出并持有一个小块，用完之后调用release
+         */
+        synchronized Tile acquire(long key){
+            Tile tile = get(key);
+            if (tile != null){
+                tile.pins++;
+            }
+            return tile;
+        }
+
+        /**
+         * 放入一个刚解码、已经被当前线程持有的小块
+         */
+        synchronized void add(long key,Tile tile){
+            put(Long.valueOf(key),tile);
+        }
+
+        synchronized void release(Tile tile){
+            tile.pins--;
+            if (tile.pins == 0 && tile.evicted){
+                budget.release(tile.bitmap);
+                tile.bitmap = null;
+            }
+        }
+
+        /**
+         * 从最久没有用的开始释放，正在使用的小块在用完之后归还
+         */
+        @Override
+        public synchronized long trim(int priority, long bytes) {
+            if (priority != BitmapBudget.PRIORITY_CACHED){
+                return 0;
+            }
+            int before = size();
+            trimToSize((int) Math.max(0,before - Math.min(bytes,before)));
+            return before - size();
+        }
+
+        @Override
+        protected int sizeOf(Long key, Tile value) {
+            //bitmap都是TILE_SIZE的，边缘的小块也一样
+            return TILE_BYTES;
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, Tile oldValue, Tile newValue) {
+            synchronized (this){
+                oldValue.evicted = true;
+                if (oldValue.pins == 0){
+                    budget.release(oldValue.bitmap);
+                    oldValue.bitmap = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 保存这一页的解码器和缩小倍数，从准备到绑定之间使用
+     */
+    private static class ImagePageHolder extends PageHolder {
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        final RectF dest = new RectF();
+
+        BitmapRegionDecoder decoder;
+
+        int sampleSize = 1;
+
+        int columns(){
+            return divideCeil(decoder.getWidth(),TILE_SIZE * sampleSize);
+        }
+
+        int rows(){
+            return divideCeil(decoder.getHeight(),TILE_SIZE * sampleSize);
+        }
+
+        void close(){
+            if (decoder != null){
+                decoder.recycle();
+                decoder = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 记录耗时分布的直方图，单位为微秒
+ * 桶按2的幂分段，每段再均分为8个子桶，误差不超过12.5%，
+ * 记录和查询都不分配对象，可以在每一帧调用
+ */
+
+class LatencyHistogram {
+
+    /**
+     * 每个2的幂分段中子桶的个数
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    /**
+     * 前SUB_BUCKETS个桶是0到7微秒，之后每SUB_BUCKETS个桶是一段，最后一段是2^24到2^25微秒，
+     * 最大能区分的耗时是2^25 - 1微秒，大约33.5秒，再大的都记在最后一个桶里
+     */
+    private static final int BUCKETS = 23 * SUB_BUCKETS;
+
+    /**
+     * 超过这个耗时的帧算作掉帧，16ms
+     */
+    static final long FRAME_BUDGET_MICROS = 16000;
+
+    private final long[] counts = new long[BUCKETS];
+
+    private long count;
+
+    private long maxMicros;
+
+    private long overBudget;
+
+    void record(long nanos){
+        long micros = nanos / 1000;
+        counts[bucketOf(micros)]++;
+        count++;
+        if (micros > maxMicros){
+            maxMicros = micros;
+        }
+        if (micros > FRAME_BUDGET_MICROS){
+            overBudget++;
+        }
+    }
+
+    long count(){
+        return count;
+    }
+
+    long maxMicros(){
+        return maxMicros;
+    }
+
+    /**
+     * 超过16ms的次数
+     */
+    long overBudget(){
+        return overBudget;
+    }
+
+    /**
+     * 百分位的耗时，返回所在桶的上界
+     *
+     * @param percentile 0到100
+     */
+    long percentileMicros(double percentile){
+        if (count == 0){
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percentile / 100);
+        if (target < 1){
+            target = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target){
+                return Math.min(upperBoundOf(i),maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    void reset(){
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        maxMicros = 0;
+        overBudget = 0;
+    }
+
+    static int bucketOf(long micros){
+        if (micros < SUB_BUCKETS){
+            return (int) Math.max(micros,0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - 3;
+        int sub = (int) (micros >>> shift) - SUB_BUCKETS;
+        return Math.min((shift + 1) * SUB_BUCKETS + sub,BUCKETS - 1);
+    }
+
+    static long upperBoundOf(int bucket){
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.gaope.pageturning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * 通过内存映射读取的书，位置是文件中的字节偏移，不依赖Android
+ * 整个文件只映射一次，由系统按需换入换出，每次只把当前位置附近一个窗口的字节解码到复用的CharBuffer中，
+ * 常驻内存和文件大小无关。解码器只在完整的字符处停下，窗口的边界不会切开多字节的字符；
+ * 无法解码的字节替换为U+FFFD
+ */
+
+public class MappedBookText implements BookText {
+
+    /**
+     * 每次解码的字符数
+     */
+    private static final int WINDOW = 8192;
+
+    private final File file;
+
+    private final Charset charset;
+
+    private MappedByteBuffer mapped;
+
+    public MappedBookText(File file,Charset charset) {
+        this.file = file;
+        this.charset = charset;
+    }
+
+    @Override
+    public BookReader open(int position) throws IOException {
+        ByteBuffer bytes = map().duplicate();
+        if (position < 0 || position > bytes.limit()){
+            throw new IOException("position " + position + " is outside " + file);
+        }
+        bytes.position(position);
+        return new MappedReader(bytes,charset);
+    }
+
+    @Override
+    public String fingerprint() {
+        return file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified() + ':' + charset.name();
+    }
+
+    /**
+     * 第一次打开时映射整个文件，映射建立后文件通道可以关闭
+     */
+    private synchronized MappedByteBuffer map() throws IOException {
+        if (mapped == null){
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file,"r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                if (channel.size() > Integer.MAX_VALUE){
+                    throw new IOException(file + " is too large to map");
+                }
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+        return mapped;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset){
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * 按窗口解码的Reader，每个窗口开始时记录已经读出的字符数和字节偏移，
+     * position从最近的记录处重新解码不超过一个窗口的字符来得到字节偏移
+     */
+    private static class MappedReader extends BookReader {
+
+        private final ByteBuffer bytes;
+
+        private final CharsetDecoder decoder;
+
+        private final CharBuffer window;
+
+        /**
+         * position中重新解码用的解码器和缓冲区
+         */
+        private final CharsetDecoder positionDecoder;
+
+        private final CharBuffer positionWindow;
+
+        private final ByteBuffer positionBytes;
+
+        /**
+         * 每个窗口开始时已经读出的字符数和对应的字节偏移
+         */
+        private int[] checkpointChars;
+
+        private int[] checkpointBytes;
+
+        private int checkpointCount;
+
+        /**
+         * 已经读出的字符数
+         */
+        private int delivered;
+
+        private boolean flushed;
+
+        MappedReader(ByteBuffer bytes,Charset charset) {
+            this.bytes = bytes;
+            decoder = newDecoder(charset);
+            window = CharBuffer.allocate(WINDOW);
+            window.flip();
+            positionDecoder = newDecoder(charset);
+            positionWindow = CharBuffer.allocate(WINDOW);
+            positionBytes = bytes.duplicate();
+            checkpointChars = new int[16];
+            checkpointBytes = new int[16];
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0){
+                return 0;
+            }
+            if (!window.hasRemaining() && !decodeWindow()){
+                return -1;
+            }
+            int n = Math.min(len,window.remaining());
+            window.get(cbuf,off,n);
+            delivered += n;
+            return n;
+        }
+
+        @Override
+        public int position(int count) throws IOException {
+            //position的参数不会变小，更早的记录不再需要
+            int found = 0;
+            while (found + 1 < checkpointCount && checkpointChars[found + 1] <= count){
+                found++;
+            }
+            if (found > 0){
+                System.arraycopy(checkpointChars,found,checkpointChars,0,checkpointCount - found);
+                System.arraycopy(checkpointBytes,found,checkpointBytes,0,checkpointCount - found);
+                checkpointCount -= found;
+            }
+            if (checkpointCount == 0){
+                //还没有读过任何字符
+                return bytes.position();
+            }
+            int chars = count - checkpointChars[0];
+            positionBytes.limit(bytes.limit());
+            positionBytes.position(checkpointBytes[0]);
+            if (chars == 0){
+                return positionBytes.position();
+            }
+            positionDecoder.reset();
+            positionWindow.clear();
+            positionWindow.limit(chars);
+            positionDecoder.decode(positionBytes,positionWindow,true);
+            return positionBytes.position();
+        }
+
+        @Override
+        public void close() {
+            checkpointCount = 0;
+        }
+
+        /**
+         * 解码下一个窗口，没有更多字符时返回false
+         */
+        private boolean decodeWindow() throws IOException {
+            if (flushed){
+                return false;
+            }
+            if (checkpointCount == checkpointChars.length){
+                checkpointChars = Arrays.copyOf(checkpointChars,checkpointCount * 2);
+                checkpointBytes = Arrays.copyOf(checkpointBytes,checkpointCount * 2);
+            }
+            checkpointChars[checkpointCount] = delivered;
+            checkpointBytes[checkpointCount] = bytes.position();
+            checkpointCount++;
+
+            window.clear();
+            CoderResult result = decoder.decode(bytes,window,true);
+            if (result.isUnderflow()){
+                //所有字节都已经解码，映射的是整个文件，剩下的不完整字节已经被替换
+                decoder.flush(window);
+                flushed = true;
+            }else if (result.isError()){
+                result.throwException();
+            }
+            window.flip();
+            return window.hasRemaining();
+        }
+    }
+}
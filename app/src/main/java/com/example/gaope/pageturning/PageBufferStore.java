@@ -0,0 +1,254 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * 堆外的页面栅格缓存，PageRasterCache重新绑定一个holder之前把它的页面用copyPixelsToBuffer复制到缓冲区中，
+ * 这一页再次进入预取的窗口时用copyPixelsFromBuffer恢复到holder的bitmap上，不用重新排版和绘制。
+ * 缓冲区是缓存目录中一个临时文件用FileChannel.map映射出来的，每页一段。Android上ByteBuffer.allocateDirect
+ * 其实是Java堆中不会移动的byte[]，仍然计入堆的大小；映射的文件不在Java堆中，缓存多少页都不会增加GC的压力，
+ * 内存紧张时系统还可以把它们写回文件再回收。文件打开之后马上删除，不会留在缓存目录中。
+ * 可以选择以RGB_565保存，内存减半，但是透明的部分会合成到background上，恢复之后是不透明的。
+ * 映射的缓冲区放在池中重复使用，尺寸变化时才丢弃。注册到BitmapBudget之后，系统内存紧张时和其它缓存一起全部释放
+ */
+
+class PageBufferStore implements BitmapBudget.Consumer {
+
+    private static final String TAG = "PageBufferStore";
+
+    /**
+     * 临时文件所在的目录
+     */
+    private final File directory;
+
+    private final int maxBytes;
+
+    private final boolean packed;
+
+    private final int background;
+
+    /**
+     * 被LRU挤出的缓冲区，下一次保存时重复使用
+     */
+    private final ArrayList<ByteBuffer> pool = new ArrayList<ByteBuffer>();
+
+    private LruCache<Integer,ByteBuffer> pages;
+
+    /**
+     * 只有和PageRasterCache当前的生成一致的页才会保存和恢复
+     */
+    private int generation;
+
+    private int width;
+
+    private int height;
+
+    private int pageBytes;
+
+    /**
+     * 以RGB_565保存时用来转换格式的bitmap
+     */
+    private Bitmap packBitmap;
+
+    private Canvas packCanvas;
+
+    /**
+     * 映射过并且还没有丢弃的缓冲区的总字节数，也是下一段映射在文件中的位置
+     */
+    private long allocatedBytes;
+
+    private RandomAccessFile file;
+
+    PageBufferStore(File directory,int maxBytes,boolean packed,int background) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.packed = packed;
+        this.background = background;
+    }
+
+    /**
+     * View尺寸变化时调用，所有的页和池中的缓冲区全部丢弃
+     */
+    synchronized void resize(int width,int height){
+        if (this.width == width && this.height == height){
+            return;
+        }
+        release();
+        this.width = width;
+        this.height = height;
+        pageBytes = width * height * (packed ? 2 : 4);
+        if (pageBytes <= 0 || maxBytes < pageBytes){
+            return;
+        }
+        pages = new LruCache<Integer,ByteBuffer>(maxBytes / pageBytes){
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, ByteBuffer oldValue, ByteBuffer newValue) {
+                pool.add(oldValue);
+            }
+        };
+    }
+
+    /**
+     * 排版条件变化时调用，之前保存的页全部作废，缓冲区留在池中
+     */
+    synchronized void clear(int generation){
+        this.generation = generation;
+        if (pages != null){
+            pages.evictAll();
+        }
+    }
+
+    /**
+     * 保存一页，已经保存过或者尺寸不对时什么也不做
+     */
+    synchronized void put(int generation,int page,Bitmap bitmap){
+        if (pages == null || generation != this.generation
+                || bitmap.getWidth() != width || bitmap.getHeight() != height || pages.get(page) != null){
+            return;
+        }
+        ByteBuffer buffer = obtainBuffer();
+        if (buffer == null){
+            return;
+        }
+        buffer.clear();
+        if (packed){
+            Bitmap packBitmap = obtainPackBitmap();
+            packCanvas.drawColor(background);
+            packCanvas.drawBitmap(bitmap,0,0,null);
+            packBitmap.copyPixelsToBuffer(buffer);
+        }else {
+            bitmap.copyPixelsToBuffer(buffer);
+        }
+        pages.put(page,buffer);
+    }
+
+    /**
+     * 把保存的一页恢复到bitmap上，没有这一页时返回false
+     */
+    synchronized boolean restore(int generation,int page,Bitmap bitmap,Canvas canvas){
+        if (pages == null || generation != this.generation
+                || bitmap.getWidth() != width || bitmap.getHeight() != height){
+            return false;
+        }
+        ByteBuffer buffer = pages.get(page);
+        if (buffer == null){
+            return false;
+        }
+        buffer.rewind();
+        if (packed){
+            Bitmap packBitmap = obtainPackBitmap();
+            packBitmap.copyPixelsFromBuffer(buffer);
+            canvas.drawBitmap(packBitmap,0,0,null);
+        }else {
+            bitmap.copyPixelsFromBuffer(buffer);
+        }
+        return true;
+    }
+
+    /**
+     * 堆外占用的字节数，包括保存着页面的和池中空闲的缓冲区
+     */
+    synchronized long getMemoryBytes(){
+        return allocatedBytes;
+    }
+
+    /**
+     * 保存的页都是可以重新绘制的缓存，系统内存紧张时（bytes为TRIM_ALL）在PRIORITY_CACHED全部释放，之后还可以继续保存。
+     * 占用的内存不在bitmap的预算中，分配bitmap时要求的释放不处理，返回值总是0
+     */
+    @Override
+    public synchronized long trim(int priority, long bytes) {
+        if (priority == BitmapBudget.PRIORITY_CACHED && bytes == BitmapBudget.TRIM_ALL){
+            discard();
+        }
+        return 0;
+    }
+
+    /**
+     * 丢弃所有的页和缓冲区
+     */
+    synchronized void release(){
+        discard();
+        pages = null;
+        width = 0;
+        height = 0;
+    }
+
+    /**
+     * 清空保存的页和池，把文件截断之后关闭，映射的内存马上归还给系统。
+     * 截断之后不能再访问原来的映射，所以先丢弃所有的引用
+     */
+    private void discard(){
+        if (pages != null){
+            pages.evictAll();
+        }
+        pool.clear();
+        allocatedBytes = 0;
+        if (file != null){
+            try {
+                file.getChannel().truncate(0);
+                file.close();
+            } catch (IOException e) {
+                Log.w(TAG,"failed to close page file",e);
+            }
+            file = null;
+        }
+        if (packBitmap != null){
+            packCanvas.setBitmap(null);
+            packBitmap.recycle();
+            packBitmap = null;
+        }
+    }
+
+    /**
+     * 从池中取出一个缓冲区，池是空的时在文件末尾映射新的一段，失败时返回null
+     */
+    private ByteBuffer obtainBuffer(){
+        int last = pool.size() - 1;
+        if (last >= 0){
+            return pool.remove(last);
+        }
+        try {
+            if (file == null){
+                file = openFile();
+            }
+            //映射超出文件末尾时文件自动变长
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE,allocatedBytes,pageBytes);
+            allocatedBytes += pageBytes;
+            return buffer;
+        } catch (IOException e) {
+            Log.w(TAG,"failed to map page buffer",e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建临时文件，打开之后删除文件名，关闭或者进程退出时由系统回收
+     */
+    private RandomAccessFile openFile() throws IOException {
+        File created = File.createTempFile("pages",".raster",directory);
+        RandomAccessFile opened = new RandomAccessFile(created,"rw");
+        if (!created.delete()){
+            created.deleteOnExit();
+        }
+        return opened;
+    }
+
+    private Bitmap obtainPackBitmap(){
+        if (packBitmap == null){
+            packBitmap = Bitmap.createBitmap(width,height, Bitmap.Config.RGB_565);
+            packCanvas = new Canvas(packBitmap);
+        }
+        return packBitmap;
+    }
+}
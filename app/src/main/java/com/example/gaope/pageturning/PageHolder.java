@@ -0,0 +1,87 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+
+/**
+ * 保存一页内容的栅格，由PageProvider创建，PageTurnView只保留固定的几个，翻页时重新绑定到别的页上，
+ * 和RecyclerView的ViewHolder一样，需要为每一页保存的东西（比如排版结果）可以放在子类中重复使用。
+ * 内容保存在bitmap上，或者在记录模式下保存在Picture中，两者只有一个
+ */
+
+public class PageHolder {
+
+    static final int STATE_EMPTY = 0;
+
+    /**
+     * 正在调用onPreparePage
+     */
+    static final int STATE_PREPARING = 1;
+
+    /**
+     * 已经准备好，等待栅格化线程绑定
+     */
+    static final int STATE_PREPARED = 2;
+
+    /**
+     * 正在调用onBindPage
+     */
+    static final int STATE_BINDING = 3;
+
+    static final int STATE_BOUND = 4;
+
+    /**
+     * 画到bitmap上的Canvas
+     */
+    final Canvas bitmapCanvas = new Canvas();
+
+    /**
+     * 绑定时使用的Canvas，记录模式下是Picture的Canvas
+     */
+    Canvas canvas = bitmapCanvas;
+
+    Bitmap bitmap;
+
+    Picture picture;
+
+    int width;
+
+    int height;
+
+    int page = -1;
+
+    int state = STATE_EMPTY;
+
+    /**
+     * 开始准备时PageRasterCache的生成，不一致时结果作废
+     */
+    int generation;
+
+    /**
+     * 被重新绑定之前绑定的页，先保存到PageBufferStore，没有时为-1
+     */
+    int evictedPage = -1;
+
+    /**
+     * 画这一页的Canvas，已经清成透明，背景由PageTurnView填充，只在onBindPage中有效
+     */
+    public final Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * 绑定的页码，没有绑定时为-1
+     */
+    public final int getPage() {
+        return page;
+    }
+
+    public final int getWidth() {
+        return width;
+    }
+
+    public final int getHeight() {
+        return height;
+    }
+}
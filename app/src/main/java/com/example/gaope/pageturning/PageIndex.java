@@ -0,0 +1,24 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 分页的结果，每一页在书中的起始位置
+ * complete为true时最后一个位置是书的结尾，总页数为count - 1
+ */
+
+class PageIndex {
+
+    final int[] starts;
+
+    /**
+     * starts中有效的个数
+     */
+    final int count;
+
+    final boolean complete;
+
+    PageIndex(int[] starts,int count,boolean complete) {
+        this.starts = starts;
+        this.count = count;
+        this.complete = complete;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.gaope.pageturning;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 分页结果在磁盘上的索引，不依赖Android
+ * 以书的指纹、字体、字号和页面尺寸作为排版条件，同样的条件下重新打开书或者跳页时不需要重新排版。
+ * 文件格式：魔数、版本、排版条件字符串、是否完整、页数，之后是每一页长度的varint，
+ * 一页通常只占两个字节
+ */
+
+class PageIndexStore {
+
+    private static final int MAGIC = 0x50494458;
+
+    private static final int VERSION = 1;
+
+    private final File directory;
+
+    private ExecutorService executor;
+
+    PageIndexStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 排版条件，任何一项变化时分页结果都不能再用
+     */
+    static String layoutKey(String fingerprint,String typeface,float textSize,float lineWidth,int linesPerPage){
+        return fingerprint + '|' + typeface + '|' + textSize + '|' + lineWidth + '|' + linesPerPage;
+    }
+
+    /**
+     * 读取某个排版条件下的索引，没有或者已经损坏时返回null
+     */
+    PageIndex load(String key){
+        File file = fileOf(key);
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION || !key.equals(in.readUTF())){
+                return null;
+            }
+            boolean complete = in.readBoolean();
+            int count = readVarint(in);
+            //第一页之后每一页至少占一个字节，损坏的页数不会分配出超过文件大小的数组
+            if (count < 1 || count - 1 > file.length()){
+                return null;
+            }
+            int[] starts = new int[count];
+            for (int i = 1; i < count; i++) {
+                starts[i] = starts[i - 1] + readVarint(in);
+            }
+            return new PageIndex(starts,count,complete);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 保存索引，先写临时文件再改名，写到一半时不会留下损坏的索引
+     */
+    void save(String key,PageIndex index) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("cannot create " + directory);
+        }
+        File file = fileOf(key);
+        File temp = new File(directory,file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(key);
+            out.writeBoolean(index.complete);
+            writeVarint(out,index.count);
+            for (int i = 1; i < index.count; i++) {
+                writeVarint(out,index.starts[i] - index.starts[i - 1]);
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)){
+            temp.delete();
+            throw new IOException("cannot rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * 在后台线程读取索引并导入live，索引不完整时用builder继续排版到结尾后保存，再导入live
+     * builder必须和live的排版条件相同，返回的Future用来在排版条件变化时取消
+     */
+    Future<?> loadOrBuild(final String key,final Paginator live,final Paginator builder){
+        if (executor == null){
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,"PageIndexStore");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                PageIndex index = load(key);
+                if (index != null){
+                    live.restore(index);
+                    if (index.complete){
+                        closeQuietly(builder);
+                        return;
+                    }
+                    builder.restore(index);
+                }
+                try {
+                    index = builder.layoutAll();
+                    save(key,index);
+                    live.restore(index);
+                } catch (InterruptedIOException e) {
+                    //排版条件已经变化，保存已经排好的部分，下次同样的条件下继续
+                    try {
+                        save(key,builder.index());
+                    } catch (IOException ignored) {
+                    }
+                } catch (IOException e) {
+                    //书读取失败或者索引写入失败，下次打开时重新排版
+                } finally {
+                    closeQuietly(builder);
+                }
+            }
+        });
+    }
+
+    /**
+     * 停止后台线程
+     */
+    void release(){
+        if (executor != null){
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private File fileOf(String key){
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 4);
+            for (byte b : digest) {
+                name.append(String.format(Locale.US,"%02x",b & 0xff));
+            }
+            return new File(directory,name.append(".idx").toString());
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out,int value) throws IOException {
+        while ((value & ~0x7f) != 0){
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static void closeQuietly(Closeable closeable){
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //忽略
+        }
+    }
+}
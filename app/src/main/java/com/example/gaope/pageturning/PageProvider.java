@@ -0,0 +1,75 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 为PageTurnView提供页面内容，和RecyclerView.Adapter类似
+ * PageTurnView只创建固定数量的PageHolder，前一页、当前页、后面两页和一个备用，翻页时把离当前页最远的重新绑定，
+ * 翻过多少页占用的内存都不变。准备和绑定会在后台线程调用，同一个PageHolder不会同时被两个线程使用
+ */
+
+public abstract class PageProvider {
+
+    /**
+     * 内容变化时由PageTurnView设置
+     */
+    private Runnable observer;
+
+    /**
+     * 总页数，还不确定时返回-1
+     */
+    public abstract int getPageCount();
+
+    /**
+     * 创建一个PageHolder，只在View尺寸变化或者更换PageProvider时调用，
+     * 需要为每一页保存额外的东西时返回PageHolder的子类
+     */
+    public PageHolder onCreatePageHolder() {
+        return new PageHolder();
+    }
+
+    /**
+     * 在排版线程为绑定这一页做准备，比如取出文字排版，结果保存在holder中。
+     * 之后的onBindPage在栅格化线程调用，两步可以同时处理相邻的两页。默认什么也不做
+     */
+    public void onPreparePage(PageHolder holder,int page) {
+    }
+
+    /**
+     * 把这一页的内容画到holder.getCanvas()上，可能在栅格化线程或者UI线程调用
+     */
+    public abstract void onBindPage(PageHolder holder,int page);
+
+    /**
+     * 准备好的页没有绑定就被放弃时调用，比如页面内容变化、holder被丢弃或者给别的页使用，
+     * 释放onPreparePage保存在holder中的资源。默认什么也不做
+     */
+    public void onDiscardPreparedPage(PageHolder holder,int page) {
+    }
+
+    /**
+     * onBindPage只用Canvas的绘制命令，不依赖画完之后的像素（比如画上去又会被复用的bitmap）时返回true，
+     * PageTurnView在CONTENT_MODE_PICTURE下会把每一页记录成Picture。默认返回false
+     */
+    public boolean isRecordable() {
+        return false;
+    }
+
+    /**
+     * 页面内容或者页数变化时调用，已经绑定的页全部重新绑定，只能在UI线程调用
+     */
+    public final void notifyPagesChanged() {
+        if (observer != null){
+            observer.run();
+        }
+    }
+
+    /**
+     * 自己持有bitmap的PageProvider返回它们的释放方式，PageTurnView显示时注册到BitmapBudget
+     */
+    BitmapBudget.Consumer getBitmapConsumer() {
+        return null;
+    }
+
+    void setObserver(Runnable observer) {
+        this.observer = observer;
+    }
+}
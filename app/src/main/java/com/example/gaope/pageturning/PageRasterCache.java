@@ -0,0 +1,674 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.os.Process;
+
+/**
+ * 页面内容的栅格缓存和后台的排版、栅格化流水线
+ * 每一页的内容只绘制一次到PageHolder的bitmap上，翻页时A、B、C区域只需要裁剪后贴图，不再每一帧重新绘制文字。
+ * PageHolder的数量是固定的，当前页前后的窗口加上备用的，bitmap从BitmapBudget分配，
+ * 翻到新的页时把窗口以外离当前页最远的holder连同它的bitmap重新绑定，翻过多少页都不会再分配内存。
+ * 超出预算时BitmapBudget先让窗口以外的holder交出bitmap，再是预取的，正在显示的两页不会被释放，
+ * 预取的页分配不到bitmap时暂时不预取。
+ * 设置了PageBufferStore时，重新绑定之前把原来的页保存到堆外，这一页再回到窗口时直接恢复。
+ * 记录模式下每一页记录成Picture，不分配bitmap，也不使用PageBufferStore。
+ * 后台有两个线程：排版线程按离当前页由近到远的顺序调用onPreparePage，准备好的页交给栅格化线程调用onBindPage。
+ * 多次prefetchAround只保留最后一次的当前页，尺寸或字号变化时invalidate让所有旧的结果作废，
+ * UI线程只会等待它马上要显示的那一页
+ */
+
+class PageRasterCache implements BitmapBudget.Consumer {
+
+    /**
+     * 向后和向前预取的页数
+     */
+    private static final int AHEAD = 2;
+
+    private static final int BEHIND = 1;
+
+    /**
+     * 窗口以外备用的holder，当前页移动时不用等窗口里的页被替换就能开始准备新的页
+     */
+    private static final int SPARES = 1;
+
+    static final int HOLDERS = BEHIND + 1 + AHEAD + SPARES;
+
+    private static final PageHolder[] NO_HOLDERS = new PageHolder[0];
+
+    private final BitmapBudget budget;
+
+    /**
+     * holder的状态、页码和生成都在这个锁中修改，等待某一页的线程在这个锁上wait
+     */
+    private final Object lock = new Object();
+
+    private volatile PageProvider provider;
+
+    private volatile PageBufferStore store;
+
+    /**
+     * 是否把每一页记录成Picture
+     */
+    private boolean recording;
+
+    private PageHolder[] holders = NO_HOLDERS;
+
+    /**
+     * 每次invalidate加一，生成之前开始的准备和绑定完成时发现不一致直接放弃
+     */
+    private int generation;
+
+    private int targetPage;
+
+    /**
+     * UI线程最近两次get的页，和targetPage、targetPage + 1一起算作正在显示
+     */
+    private final int[] displayedPages = {-1,-1};
+
+    private int displayedIndex;
+
+    private Thread layoutThread;
+
+    private Thread rasterThread;
+
+    private int width;
+
+    private int height;
+
+    PageRasterCache(BitmapBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * 更换页面内容的来源，旧的holder全部丢弃，由新的PageProvider重新创建
+     */
+    void setProvider(PageProvider provider){
+        synchronized (lock){
+            generation++;
+            clearStore();
+            //准备好的页由创建它们的PageProvider释放
+            discardHolders();
+            this.provider = provider;
+            ensureHolders();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * View尺寸变化时调用，旧尺寸的bitmap全部归还
+     */
+    void resize(int width,int height){
+        synchronized (lock){
+            if (this.width == width && this.height == height){
+                return;
+            }
+            generation++;
+            discardHolders();
+            this.width = width;
+            this.height = height;
+            if (store != null){
+                store.resize(width,height);
+            }
+            clearStore();
+            ensureHolders();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 切换记录模式，所有的holder重新创建
+     */
+    void setRecording(boolean recording){
+        synchronized (lock){
+            if (this.recording == recording){
+                return;
+            }
+            this.recording = recording;
+            generation++;
+            clearStore();
+            discardHolders();
+            ensureHolders();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 获取绑定了某一页的holder，内容在bitmap或者picture中，只在UI线程调用
+     * 没有绑定时，如果后台正在准备或者绘制这一页就等待它，已经准备好还在排队就直接在当前线程绘制，
+     * 都没有时在当前线程准备和绘制。这一页不在预取的窗口中时（比如跳页），窗口移到这一页
+     */
+    PageHolder get(int page){
+        PageHolder holder;
+        boolean bound = false;
+        boolean prepare = false;
+        boolean interrupted = false;
+        synchronized (lock){
+            ensureHolders();
+            if (holders.length == 0){
+                throw new IllegalStateException("no page provider or size");
+            }
+            if (!inWindow(page)){
+                targetPage = page;
+                lock.notifyAll();
+            }
+            displayedPages[displayedIndex] = page;
+            displayedIndex ^= 1;
+            while (true){
+                holder = find(page);
+                if (holder != null && holder.state == PageHolder.STATE_BOUND){
+                    bound = true;
+                    break;
+                }
+                //排在别的页后面的不等
+                if (holder != null && holder.state == PageHolder.STATE_PREPARED){
+                    holder.state = PageHolder.STATE_BINDING;
+                    break;
+                }
+                if (holder == null && (holder = claim(page)) != null){
+                    prepare = true;
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted){
+            Thread.currentThread().interrupt();
+        }
+        if (bound){
+            return holder;
+        }
+        PageProvider provider = this.provider;
+        if (prepare){
+            //正在显示的页不会被拒绝
+            ensureBitmap(holder,BitmapBudget.PRIORITY_VISIBLE);
+            if (swapStore(holder)){
+                publish(holder,PageHolder.STATE_BOUND);
+                return holder;
+            }
+            provider.onPreparePage(holder,page);
+        }
+        bind(provider,holder);
+        publish(holder,PageHolder.STATE_BOUND);
+        return holder;
+    }
+
+    /**
+     * 让后台从page开始向前后预取，多次调用时只保留最后一次的page
+     */
+    void prefetchAround(int page){
+        synchronized (lock){
+            ensureHolders();
+            if (holders.length == 0){
+                return;
+            }
+            targetPage = page;
+            ensureThreads();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 页面内容变化时调用，已经绑定的页全部作废，正在进行的准备和绑定完成后放弃
+     */
+    void invalidate(){
+        synchronized (lock){
+            generation++;
+            clearStore();
+            for (PageHolder holder : holders) {
+                if (!isBusy(holder)){
+                    discardPrepared(holder);
+                    holder.state = PageHolder.STATE_EMPTY;
+                    holder.page = -1;
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * View移除时调用，停止后台线程并把bitmap归还给BitmapBudget，再次显示时重新创建holder
+     */
+    void release(){
+        synchronized (lock){
+            if (layoutThread != null){
+                layoutThread.interrupt();
+                rasterThread.interrupt();
+                layoutThread = null;
+                rasterThread = null;
+            }
+            generation++;
+            discardHolders();
+            if (store != null){
+                store.release();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 设置堆外的页面缓存，传入null不再使用，旧的缓存全部释放
+     */
+    void setStore(PageBufferStore store){
+        synchronized (lock){
+            if (this.store != null){
+                this.store.release();
+            }
+            this.store = store;
+            if (store != null){
+                store.resize(width,height);
+            }
+            clearStore();
+        }
+    }
+
+    /**
+     * 排版线程的循环，每次取离最新的当前页最近的一页，没有要准备的页时等待
+     */
+    private void layoutLoop(){
+        while (true){
+            //页数可能需要等分页的锁，不在lock中获取
+            PageProvider provider = this.provider;
+            int pageCount = provider != null ? provider.getPageCount() : -1;
+            PageHolder holder = null;
+            int page = -1;
+            synchronized (lock){
+                if (Thread.currentThread() != layoutThread){
+                    return;
+                }
+                if (provider == this.provider){
+                    page = nextMissingPage(pageCount);
+                    holder = page >= 0 ? claim(page) : null;
+                }
+                if (holder == null){
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            if (!ensureBitmap(holder,BitmapBudget.PRIORITY_PREFETCHED)){
+                //超出预算，等到下一次prefetchAround或者别的页变化时再试
+                publish(holder,PageHolder.STATE_EMPTY);
+                synchronized (lock){
+                    if (Thread.currentThread() != layoutThread){
+                        return;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            if (swapStore(holder)){
+                publish(holder,PageHolder.STATE_BOUND);
+                continue;
+            }
+            provider.onPreparePage(holder,page);
+            publishPrepared(provider,holder);
+        }
+    }
+
+    /**
+     * 栅格化线程的循环，每次绑定离当前页最近的已经准备好的页
+     */
+    private void rasterLoop(){
+        while (true){
+            PageHolder holder;
+            PageProvider provider;
+            synchronized (lock){
+                while ((holder = nextPrepared()) == null){
+                    if (Thread.currentThread() != rasterThread){
+                        return;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                holder.state = PageHolder.STATE_BINDING;
+                provider = this.provider;
+            }
+            bind(provider,holder);
+            publish(holder,PageHolder.STATE_BOUND);
+        }
+    }
+
+    /**
+     * 把holder原来的页保存到PageBufferStore，再试着从中恢复新的页，恢复了返回true。
+     * holder正在处理，复制时不需要持有lock
+     */
+    private boolean swapStore(PageHolder holder){
+        PageBufferStore store = this.store;
+        int evicted = holder.evictedPage;
+        holder.evictedPage = -1;
+        if (store == null || holder.bitmap == null){
+            return false;
+        }
+        if (evicted >= 0){
+            store.put(holder.generation,evicted,holder.bitmap);
+        }
+        return store.restore(holder.generation,holder.page,holder.bitmap,holder.bitmapCanvas);
+    }
+
+    /**
+     * 生成变化之后调用，之前保存的页全部作废
+     */
+    private void clearStore(){
+        if (store != null){
+            store.clear(generation);
+        }
+    }
+
+    /**
+     * 页面栅格只保存内容，背景由各个区域自己填充
+     */
+    private void bind(PageProvider provider,PageHolder holder){
+        Picture picture = holder.picture;
+        if (picture != null){
+            holder.canvas = picture.beginRecording(holder.width,holder.height);
+            provider.onBindPage(holder,holder.page);
+            picture.endRecording();
+            holder.canvas = holder.bitmapCanvas;
+            return;
+        }
+        holder.bitmap.eraseColor(Color.TRANSPARENT);
+        provider.onBindPage(holder,holder.page);
+    }
+
+    /**
+     * 准备或者绑定完成，生成已经变化时放弃结果，holder已经被丢弃时归还bitmap
+     */
+    private void publish(PageHolder holder,int state){
+        synchronized (lock){
+            if (!contains(holder)){
+                recycle(holder);
+            }else if (holder.generation != generation || state == PageHolder.STATE_EMPTY){
+                holder.state = PageHolder.STATE_EMPTY;
+                holder.page = -1;
+            }else {
+                holder.state = state;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 排版线程准备完成，holder已经被丢弃或者生成已经变化时让provider释放准备的结果
+     */
+    private void publishPrepared(PageProvider provider,PageHolder holder){
+        synchronized (lock){
+            if (!contains(holder) || holder.generation != generation){
+                provider.onDiscardPreparedPage(holder,holder.page);
+            }
+            publish(holder,PageHolder.STATE_PREPARED);
+        }
+    }
+
+    /**
+     * 准备好还没有绑定的holder被放弃时调用，holder属于当前的provider
+     */
+    private void discardPrepared(PageHolder holder){
+        if (holder.state == PageHolder.STATE_PREPARED && provider != null){
+            provider.onDiscardPreparedPage(holder,holder.page);
+        }
+    }
+
+    /**
+     * 释放优先级为priority的holder的bitmap，离当前页远的先释放，正在处理的不释放
+     */
+    @Override
+    public long trim(int priority, long bytes) {
+        long released = 0;
+        synchronized (lock){
+            while (released < bytes){
+                PageHolder victim = null;
+                int farthest = -1;
+                for (PageHolder holder : holders) {
+                    if (holder.bitmap == null || isBusy(holder) || priorityOf(holder) != priority){
+                        continue;
+                    }
+                    int distance = holder.state == PageHolder.STATE_EMPTY ? Integer.MAX_VALUE : Math.abs(holder.page - targetPage);
+                    if (distance > farthest){
+                        farthest = distance;
+                        victim = holder;
+                    }
+                }
+                if (victim == null){
+                    break;
+                }
+                released += BitmapBudget.bytesOf(victim.bitmap);
+                recycle(victim);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 正在显示的两页最重要，其次是窗口中预取的页，窗口以外的和空的holder只是缓存
+     */
+    private int priorityOf(PageHolder holder){
+        if (holder.state == PageHolder.STATE_EMPTY){
+            return BitmapBudget.PRIORITY_CACHED;
+        }
+        int page = holder.page;
+        if (page == targetPage || page == targetPage + 1 || page == displayedPages[0] || page == displayedPages[1]){
+            return BitmapBudget.PRIORITY_VISIBLE;
+        }
+        return inWindow(page) ? BitmapBudget.PRIORITY_PREFETCHED : BitmapBudget.PRIORITY_CACHED;
+    }
+
+    /**
+     * 被BitmapBudget释放过的holder在使用前重新分配bitmap，holder正在处理，不会同时被释放。
+     * 记录模式的holder不需要bitmap
+     */
+    private boolean ensureBitmap(PageHolder holder,int priority){
+        if (holder.bitmap != null || holder.picture != null){
+            return true;
+        }
+        int width;
+        int height;
+        synchronized (lock){
+            width = this.width;
+            height = this.height;
+        }
+        Bitmap bitmap = budget.acquire(width,height, Bitmap.Config.ARGB_8888,priority);
+        if (bitmap == null){
+            return false;
+        }
+        holder.bitmap = bitmap;
+        holder.bitmapCanvas.setBitmap(bitmap);
+        return true;
+    }
+
+    /**
+     * 当前页前后还没有绑定也没有在处理的页，近的优先，向后的优先于向前的
+     */
+    private int nextMissingPage(int pageCount){
+        for (int distance = 0; distance <= Math.max(AHEAD,BEHIND); distance++) {
+            if (distance <= AHEAD && isMissing(targetPage + distance,pageCount)){
+                return targetPage + distance;
+            }
+            if (distance > 0 && distance <= BEHIND && isMissing(targetPage - distance,pageCount)){
+                return targetPage - distance;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isMissing(int page,int pageCount){
+        return page >= 0 && (pageCount < 0 || page < pageCount) && find(page) == null;
+    }
+
+    /**
+     * 离当前页最近的已经准备好的holder
+     */
+    private PageHolder nextPrepared(){
+        PageHolder nearest = null;
+        for (PageHolder holder : holders) {
+            if (holder.state == PageHolder.STATE_PREPARED
+                    && (nearest == null || Math.abs(holder.page - targetPage) < Math.abs(nearest.page - targetPage))){
+                nearest = holder;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 找出一个holder给page使用，优先空的，其次是窗口以外离当前页最远的，正在处理的不能用，都没有时返回null。
+     * 已经有bitmap的优先，不用再从预算中分配
+     */
+    private PageHolder claim(int page){
+        PageHolder victim = null;
+        long best = -1;
+        for (PageHolder holder : holders) {
+            if (isBusy(holder)){
+                continue;
+            }
+            long score;
+            if (holder.state == PageHolder.STATE_EMPTY){
+                score = Integer.MAX_VALUE;
+            }else if (inWindow(holder.page)){
+                continue;
+            }else {
+                score = Math.abs(holder.page - targetPage);
+            }
+            if (holder.bitmap != null){
+                score += 1L << 32;
+            }
+            if (score > best){
+                best = score;
+                victim = holder;
+            }
+        }
+        if (victim != null){
+            discardPrepared(victim);
+            victim.evictedPage = victim.state == PageHolder.STATE_BOUND ? victim.page : -1;
+            victim.page = page;
+            victim.state = PageHolder.STATE_PREPARING;
+            victim.generation = generation;
+        }
+        return victim;
+    }
+
+    private PageHolder find(int page){
+        for (PageHolder holder : holders) {
+            if (holder.state != PageHolder.STATE_EMPTY && holder.page == page){
+                return holder;
+            }
+        }
+        return null;
+    }
+
+    private boolean contains(PageHolder target){
+        for (PageHolder holder : holders) {
+            if (holder == target){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inWindow(int page){
+        return page >= targetPage - BEHIND && page <= targetPage + AHEAD;
+    }
+
+    private static boolean isBusy(PageHolder holder){
+        return holder.state == PageHolder.STATE_PREPARING || holder.state == PageHolder.STATE_BINDING;
+    }
+
+    /**
+     * 有PageProvider和尺寸时创建holder，bitmap在第一次绑定时才分配
+     */
+    private void ensureHolders(){
+        if (holders.length > 0 || provider == null || width <= 0 || height <= 0){
+            return;
+        }
+        if (store != null){
+            //release之后重新显示
+            store.resize(width,height);
+        }
+        PageHolder[] created = new PageHolder[HOLDERS];
+        for (int i = 0; i < created.length; i++) {
+            PageHolder holder = provider.onCreatePageHolder();
+            holder.width = width;
+            holder.height = height;
+            if (recording){
+                holder.picture = new Picture();
+            }
+            created[i] = holder;
+        }
+        holders = created;
+    }
+
+    /**
+     * 丢弃所有holder，正在后台处理的在完成时由publish归还bitmap
+     */
+    private void discardHolders(){
+        for (PageHolder holder : holders) {
+            if (!isBusy(holder)){
+                recycle(holder);
+            }
+        }
+        holders = NO_HOLDERS;
+    }
+
+    private void ensureThreads(){
+        if (layoutThread == null){
+            layoutThread = new BackgroundThread("PageLayout"){
+                @Override
+                void loop() {
+                    layoutLoop();
+                }
+            };
+            rasterThread = new BackgroundThread("PageRaster"){
+                @Override
+                void loop() {
+                    rasterLoop();
+                }
+            };
+            layoutThread.start();
+            rasterThread.start();
+        }
+    }
+
+    private void recycle(PageHolder holder){
+        discardPrepared(holder);
+        holder.state = PageHolder.STATE_EMPTY;
+        holder.page = -1;
+        holder.bitmapCanvas.setBitmap(null);
+        if (holder.bitmap != null){
+            budget.release(holder.bitmap);
+        }
+        holder.bitmap = null;
+    }
+
+    /**
+     * 后台线程，以后台优先级执行loop，loop返回时线程结束
+     */
+    abstract static class BackgroundThread extends Thread {
+
+        BackgroundThread(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            loop();
+        }
+
+        abstract void loop();
+    }
+}
@@ -0,0 +1,549 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * 快速翻阅时使用的低分辨率页面缩略图，两层的金字塔，后台线程提前生成
+ * 每一页先以View的1/FINE_DIVISOR画到RGB_565的缩略图上，再带滤波缩小一半得到下一层，文字不会在缩小时闪烁。
+ * 离当前页近的几页保留两层，远的只保留小的一层，同样的内存可以覆盖更多的页，翻阅越快用的层越小。
+ * 缩略图的数量是固定的，按离当前页由近到远的顺序生成，窗口移动时重新使用窗口以外最远的，
+ * bitmap从BitmapBudget按缓存的优先级分配，超出预算时最先被释放。
+ * 缩略图是不透明的，背景色在生成时一起画上
+ */
+
+class PageThumbnailCache implements BitmapBudget.Consumer {
+
+    /**
+     * 长宽是View的1/FINE_DIVISOR
+     */
+    static final int LEVEL_FINE = 0;
+
+    /**
+     * 长宽是LEVEL_FINE的一半
+     */
+    static final int LEVEL_COARSE = 1;
+
+    static final int LEVEL_COUNT = 2;
+
+    static final int FINE_DIVISOR = 4;
+
+    private static final int[] DIVISORS = {FINE_DIVISOR,FINE_DIVISOR * 2};
+
+    /**
+     * 每一层在翻阅方向上和相反方向上覆盖的页数
+     */
+    private static final int[] AHEAD = {6,48};
+
+    private static final int[] BEHIND = {2,8};
+
+    private static final Slot[] NO_SLOTS = new Slot[0];
+
+    private final BitmapBudget budget;
+
+    private final Object lock = new Object();
+
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final Rect source = new Rect();
+
+    private final Rect dest = new Rect();
+
+    private volatile PageProvider provider;
+
+    private final Slot[][] slots = {NO_SLOTS,NO_SLOTS};
+
+    /**
+     * 只在后台线程使用的holder，onBindPage画在缩放过的Canvas上
+     */
+    private PageHolder holder;
+
+    /**
+     * 不需要保留大的一层时，在这里生成再缩小
+     */
+    private Slot scratch;
+
+    private int generation;
+
+    private int centerPage;
+
+    /**
+     * UI线程最近两次get的页，正在显示，不会被释放或者重新使用
+     */
+    private final int[] displayedPages = {-1,-1};
+
+    private int displayedIndex;
+
+    private boolean backward;
+
+    private volatile int background;
+
+    private int width;
+
+    private int height;
+
+    private Thread thread;
+
+    PageThumbnailCache(BitmapBudget budget,int background) {
+        this.budget = budget;
+        this.background = background;
+    }
+
+    /**
+     * 一层缩略图，page为-1时是空的
+     */
+    private static final class Slot {
+
+        final int level;
+
+        final Canvas canvas = new Canvas();
+
+        Bitmap bitmap;
+
+        int page = -1;
+
+        /**
+         * 后台线程正在画，不能释放
+         */
+        boolean busy;
+
+        /**
+         * 后台线程正在把它缩小到下一层，可以显示，但不能释放或者重新使用
+         */
+        boolean reading;
+
+        Slot(int level) {
+            this.level = level;
+        }
+    }
+
+    void setProvider(PageProvider provider){
+        synchronized (lock){
+            this.provider = provider;
+            holder = null;
+            invalidateLocked();
+        }
+    }
+
+    /**
+     * View尺寸变化时调用，旧尺寸的bitmap全部归还
+     */
+    void resize(int width,int height){
+        synchronized (lock){
+            if (this.width == width && this.height == height){
+                return;
+            }
+            discardSlots();
+            this.width = width;
+            this.height = height;
+            holder = null;
+            invalidateLocked();
+        }
+    }
+
+    /**
+     * 页面内容或者背景色变化时调用，已经生成的缩略图全部作废
+     */
+    void invalidate(int background){
+        synchronized (lock){
+            this.background = background;
+            invalidateLocked();
+        }
+    }
+
+    /**
+     * 以page为中心生成缩略图，backward为true时窗口偏向前面的页
+     */
+    void prefetchAround(int page,boolean backward){
+        synchronized (lock){
+            if (centerPage == page && this.backward == backward && thread != null){
+                return;
+            }
+            centerPage = page;
+            this.backward = backward;
+            ensureThread();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 获取某一页的缩略图，优先使用level这一层，没有时用另一层，都没有时返回null，只在UI线程调用。
+     * 返回的bitmap在之后的两次调用之前不会被释放或者重新使用
+     */
+    Bitmap get(int page,int level){
+        synchronized (lock){
+            displayedPages[displayedIndex] = page;
+            displayedIndex = (displayedIndex + 1) % displayedPages.length;
+            Slot slot = find(page,level);
+            if (slot == null){
+                slot = find(page,LEVEL_COUNT - 1 - level);
+            }
+            return slot != null ? slot.bitmap : null;
+        }
+    }
+
+    /**
+     * View移除时调用，停止后台线程并把bitmap归还给BitmapBudget
+     */
+    void release(){
+        synchronized (lock){
+            if (thread != null){
+                thread.interrupt();
+                thread = null;
+            }
+            discardSlots();
+            generation++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 缩略图都是可以重新生成的缓存，只在PRIORITY_CACHED释放，离当前页远的先释放
+     */
+    @Override
+    public long trim(int priority, long bytes) {
+        if (priority != BitmapBudget.PRIORITY_CACHED){
+            return 0;
+        }
+        long released = 0;
+        synchronized (lock){
+            while (released < bytes){
+                //生成用的bitmap最先释放
+                Slot victim = scratch != null && scratch.bitmap != null && !scratch.busy ? scratch : null;
+                for (Slot[] level : slots) {
+                    for (Slot slot : level) {
+                        if (victim != scratch && slot.bitmap != null && !slot.busy && !slot.reading && !isDisplayed(slot.page)
+                                && (victim == null || distance(slot) > distance(victim))){
+                            victim = slot;
+                        }
+                    }
+                }
+                if (victim == null){
+                    break;
+                }
+                released += BitmapBudget.bytesOf(victim.bitmap);
+                recycle(victim);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 后台线程的循环，每次生成离当前页最近的缺少的一页，大的一层和小的一层一起生成
+     */
+    private void loop(){
+        while (true){
+            PageProvider provider = this.provider;
+            int pageCount = provider != null ? provider.getPageCount() : -1;
+            PageHolder holder;
+            Slot fine;
+            Slot coarse;
+            int page;
+            int generation;
+            boolean render = true;
+            synchronized (lock){
+                if (Thread.currentThread() != thread){
+                    return;
+                }
+                page = provider == this.provider ? nextMissingPage(pageCount) : -1;
+                fine = null;
+                coarse = null;
+                if (page >= 0){
+                    coarse = find(page,LEVEL_COARSE) == null ? claim(page,LEVEL_COARSE) : null;
+                    fine = find(page,LEVEL_FINE);
+                    if (fine != null){
+                        //大的一层已经有了，只需要缩小，缩小期间仍然可以显示
+                        fine.reading = true;
+                        render = false;
+                    }else {
+                        fine = inWindow(page,LEVEL_FINE) ? claim(page,LEVEL_FINE) : null;
+                        if (fine == null){
+                            fine = claimScratch();
+                        }
+                    }
+                }
+                //小的一层分配不到时，只有大的一层也没有什么可做的，等到窗口移动或者内容变化
+                if (fine == null || (coarse == null && (fine == scratch || !render))){
+                    if (fine != null){
+                        publish(fine,render ? -1 : page);
+                    }
+                    if (coarse != null){
+                        publish(coarse,-1);
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+                if (this.holder == null){
+                    this.holder = provider.onCreatePageHolder();
+                    this.holder.width = width;
+                    this.holder.height = height;
+                }
+                holder = this.holder;
+                generation = this.generation;
+            }
+            boolean drawn = ensureBitmap(fine) && (coarse == null || ensureBitmap(coarse));
+            if (drawn){
+                if (render){
+                    draw(provider,holder,fine,page);
+                }
+                if (coarse != null){
+                    downsample(fine,coarse);
+                }
+            }
+            synchronized (lock){
+                boolean current = generation == this.generation;
+                //已经有的大的一层即使没有缩小成功也保留
+                publish(fine,current && fine != scratch && (drawn || !render) ? page : -1);
+                if (coarse != null){
+                    publish(coarse,current && drawn ? page : -1);
+                }
+                if (!drawn){
+                    //超出预算，等到窗口移动或者内容变化时再试
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 先铺上背景，再把这一页按FINE_DIVISOR缩小画上去
+     */
+    private void draw(PageProvider provider,PageHolder holder,Slot slot,int page){
+        Canvas canvas = holder.bitmapCanvas;
+        canvas.setBitmap(slot.bitmap);
+        canvas.drawColor(background);
+        canvas.save();
+        canvas.scale(1f / DIVISORS[slot.level],1f / DIVISORS[slot.level]);
+        holder.page = page;
+        provider.onPreparePage(holder,page);
+        provider.onBindPage(holder,page);
+        canvas.restore();
+        canvas.setBitmap(null);
+        holder.page = -1;
+    }
+
+    /**
+     * 带滤波缩小到下一层
+     */
+    private void downsample(Slot from,Slot to){
+        source.set(0,0,from.bitmap.getWidth(),from.bitmap.getHeight());
+        dest.set(0,0,to.bitmap.getWidth(),to.bitmap.getHeight());
+        to.canvas.drawBitmap(from.bitmap,source,dest,filterPaint);
+    }
+
+    private void publish(Slot slot,int page){
+        slot.busy = false;
+        slot.reading = false;
+        slot.page = page;
+        if (slot.bitmap != null && !isAttached(slot)){
+            //处理期间被丢弃了
+            recycle(slot);
+        }
+    }
+
+    /**
+     * 从离当前页最近的开始，先找翻阅方向上的，返回缺少缩略图的页，没有时返回-1
+     */
+    private int nextMissingPage(int pageCount){
+        int ahead = AHEAD[LEVEL_COARSE];
+        int behind = BEHIND[LEVEL_COARSE];
+        int direction = backward ? -1 : 1;
+        for (int distance = 0; distance <= ahead; distance++) {
+            int page = centerPage + distance * direction;
+            if (isMissing(page,pageCount)){
+                return page;
+            }
+            if (distance > 0 && distance <= behind){
+                page = centerPage - distance * direction;
+                if (isMissing(page,pageCount)){
+                    return page;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean isMissing(int page,int pageCount){
+        if (page < 0 || (pageCount >= 0 && page >= pageCount)){
+            return false;
+        }
+        if (find(page,LEVEL_COARSE) == null){
+            return true;
+        }
+        return inWindow(page,LEVEL_FINE) && find(page,LEVEL_FINE) == null;
+    }
+
+    private boolean inWindow(int page,int level){
+        int offset = backward ? centerPage - page : page - centerPage;
+        return offset >= -BEHIND[level] && offset <= AHEAD[level];
+    }
+
+    private Slot find(int page,int level){
+        for (Slot slot : slots[level]) {
+            if (slot.page == page && !slot.busy){
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 找出一个空的或者窗口以外离当前页最远的，已经有bitmap的优先，都没有时返回null
+     */
+    private Slot claim(int page,int level){
+        ensureSlots();
+        Slot victim = null;
+        long best = -1;
+        for (Slot slot : slots[level]) {
+            if (slot.busy || slot.reading || isDisplayed(slot.page)){
+                continue;
+            }
+            long score;
+            if (slot.page < 0){
+                score = Integer.MAX_VALUE;
+            }else if (inWindow(slot.page,level)){
+                continue;
+            }else {
+                score = distance(slot);
+            }
+            if (slot.bitmap != null){
+                score += 1L << 32;
+            }
+            if (score > best){
+                best = score;
+                victim = slot;
+            }
+        }
+        if (victim != null){
+            victim.page = page;
+            victim.busy = true;
+        }
+        return victim;
+    }
+
+    private Slot claimScratch(){
+        if (width <= 0 || height <= 0){
+            return null;
+        }
+        if (scratch == null){
+            scratch = new Slot(LEVEL_FINE);
+        }
+        if (scratch.busy){
+            return null;
+        }
+        scratch.busy = true;
+        return scratch;
+    }
+
+    private boolean isDisplayed(int page){
+        return page >= 0 && (page == displayedPages[0] || page == displayedPages[1]);
+    }
+
+    private int distance(Slot slot){
+        return slot.page < 0 ? Integer.MAX_VALUE : Math.abs(slot.page - centerPage);
+    }
+
+    /**
+     * 在后台线程分配bitmap，slot正在处理，不会同时被释放
+     */
+    private boolean ensureBitmap(Slot slot){
+        if (slot.bitmap != null){
+            return true;
+        }
+        int divisor = DIVISORS[slot.level];
+        Bitmap bitmap = budget.acquire(Math.max(1,width / divisor),Math.max(1,height / divisor),
+                Bitmap.Config.RGB_565,BitmapBudget.PRIORITY_CACHED);
+        if (bitmap == null){
+            return false;
+        }
+        slot.bitmap = bitmap;
+        slot.canvas.setBitmap(bitmap);
+        return true;
+    }
+
+    private void ensureSlots(){
+        if (slots[LEVEL_FINE].length > 0 || width <= 0 || height <= 0){
+            return;
+        }
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            Slot[] created = new Slot[AHEAD[level] + 1 + BEHIND[level]];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new Slot(level);
+            }
+            slots[level] = created;
+        }
+    }
+
+    private boolean isAttached(Slot target){
+        if (target == scratch){
+            return true;
+        }
+        for (Slot slot : slots[target.level]) {
+            if (slot == target){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void invalidateLocked(){
+        generation++;
+        for (Slot[] level : slots) {
+            for (Slot slot : level) {
+                if (!slot.busy){
+                    slot.page = -1;
+                }
+            }
+        }
+        lock.notifyAll();
+    }
+
+    /**
+     * 丢弃所有的缩略图，正在后台处理的在完成时由publish归还bitmap
+     */
+    private void discardSlots(){
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            for (Slot slot : slots[level]) {
+                if (!slot.busy && !slot.reading){
+                    recycle(slot);
+                }
+            }
+            slots[level] = NO_SLOTS;
+        }
+        if (scratch != null && !scratch.busy){
+            recycle(scratch);
+        }
+        scratch = null;
+    }
+
+    private void ensureThread(){
+        if (thread == null){
+            thread = new PageRasterCache.BackgroundThread("PageThumbnail"){
+                @Override
+                void loop() {
+                    PageThumbnailCache.this.loop();
+                }
+            };
+            thread.start();
+        }
+    }
+
+    private void recycle(Slot slot){
+        slot.page = -1;
+        slot.canvas.setBitmap(null);
+        if (slot.bitmap != null){
+            budget.release(slot.bitmap);
+        }
+        slot.bitmap = null;
+    }
+}
@@ -9,20 +9,34 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Picture;
-import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Region;
-import android.graphics.drawable.GradientDrawable;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.animation.LinearInterpolator;
+import android.view.ViewConfiguration;
 import android.widget.LinearLayout;
 import android.widget.MultiAutoCompleteTextView;
-import android.widget.Scroller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import static com.example.gaope.pageturning.CurlGeometry.A;
+import static com.example.gaope.pageturning.CurlGeometry.C;
+import static com.example.gaope.pageturning.CurlGeometry.E;
+import static com.example.gaope.pageturning.CurlGeometry.F;
+import static com.example.gaope.pageturning.CurlGeometry.H;
+import static com.example.gaope.pageturning.CurlGeometry.J;
 
 /**
  * 限制右侧最大的翻页距离
@@ -39,80 +53,187 @@ public class PageTurnView extends View{
 
     private static final String TAG = "PageTurnView";
 
+    /**
+     * 根据Canvas是否开启硬件加速自动选择绘制方式
+     */
+    public static final int RENDER_MODE_AUTO = 0;
+
+    /**
+     * 软件绘制，先在帧缓冲上用Region.Op裁剪合成，再贴到View上
+     */
+    public static final int RENDER_MODE_SOFTWARE = 1;
+
+    /**
+     * 硬件加速绘制，只使用INTERSECT和DIFFERENCE裁剪，直接画在View的Canvas上
+     */
+    public static final int RENDER_MODE_HARDWARE = 2;
+
+    /**
+     * 网格绘制，当前页用drawBitmapMesh卷在圆柱上，不需要裁剪出C区域
+     */
+    public static final int RENDER_MODE_MESH = 3;
+
+    /**
+     * 不画B、C区域的阴影
+     */
+    public static final int SHADOW_QUALITY_NONE = CurlShadow.QUALITY_NONE;
+
+    /**
+     * 半透明的纯色阴影
+     */
+    public static final int SHADOW_QUALITY_FLAT = CurlShadow.QUALITY_FLAT;
+
+    /**
+     * 渐变阴影，默认值
+     */
+    public static final int SHADOW_QUALITY_GRADIENT = CurlShadow.QUALITY_GRADIENT;
+
+    /**
+     * 每一页画到bitmap上，默认值
+     */
+    public static final int CONTENT_MODE_RASTER = 0;
+
+    /**
+     * 每一页记录成Picture，A、B、C区域回放绘制命令，文字页占用的内存少得多，镜像之后的文字也是清晰的。
+     * 只对PageProvider.isRecordable()的内容有效，硬件加速下需要API 23以上，否则仍然使用bitmap
+     */
+    public static final int CONTENT_MODE_PICTURE = 1;
+
+    /**
+     * 默认的网格密度
+     */
+    private static final int DEFAULT_MESH_COLUMNS = 24;
+
+    private static final int DEFAULT_MESH_ROWS = 32;
+
+    /**
+     * 书的文字离View边缘的距离
+     */
+    private static final int PAGE_MARGIN = 40;
+
+    /**
+     * 离右边缘多少个touchSlop以内按下，沿边缘上下拖动时进入快速翻阅
+     */
+    private static final int SCRUB_EDGE_SLOPS = 4;
+
+    /**
+     * 沿边缘拖动时每翻一页手指移动多少个touchSlop
+     */
+    private static final int SCRUB_EDGE_STEP_SLOPS = 2;
+
+    /**
+     * 快速翻阅中横向拖过一个View宽翻过的页数
+     */
+    private static final int SCRUB_PAGES_PER_WIDTH = 8;
+
+    /**
+     * 翻阅速度超过这个值时使用小的一层缩略图，单位为页每秒
+     */
+    private static final float SCRUB_COARSE_RATE = 20f;
+
+    /**
+     * UI线程最多同步排版的页数，要显示的页离已经排好的页更远时先画占位的页
+     */
+    private static final int MAX_SYNC_LAYOUT_PAGES = 4;
+
+    /**
+     * 显示占位的页时，隔这么久检查一次后台是否已经排版到这一页，单位为毫秒
+     */
+    private static final long PLACEHOLDER_RETRY_MILLIS = 100;
+
     /**
      * 画笔
      */
     private Paint paint;
 
     /**
-     * 手指的触摸点
+     * 翻页的几何计算，a、f、g、e、h、c、j、b、k、d、i各点的坐标都保存在这里
+     */
+    private CurlGeometry curl;
+
+    /**
+     * 背面C的镜像矩阵，每一帧从curl中更新
+     */
+    private Matrix reflectionMatrix;
+
+    /**
+     * 帧缓冲池，整帧和A、B、C的内容都在这里的bitmap上绘制，每一帧重复使用
      */
-    private PointF a;
+    private FrameBufferPool frameBufferPool;
 
     /**
-     * 相对于触摸点的边缘点
+     * 所有PageTurnView共用的bitmap预算，显示时注册帧缓冲、页面栅格和PageProvider的释放方式
      */
-    private PointF f;
+    private BitmapBudget bitmapBudget;
+
+    /**
+     * 界面不可见时释放帧缓冲，下一次绘制时重新分配并整体重画
+     */
+    private BitmapBudget.Consumer frameBufferConsumer;
+
+    private boolean attached;
 
     /**
-     * 触摸点与边缘点之间的中点
+     * 页面内容的栅格缓存，A、B、C区域都从这里取页面内容
      */
-    private PointF g;
+    private PageRasterCache pageRasterCache;
 
     /**
-     * b,c贝塞尔曲线的控制点e
+     * 堆外的页面缓存，没有开启时为null
      */
-    private PointF e;
+    private PageBufferStore pageBufferStore;
 
     /**
-     * j,k贝塞尔曲线的控制点h
+     * 页面内容的来源，没有设置时显示书的内容
      */
-    private PointF h;
+    private PageProvider pageProvider;
+
+    private BookPageProvider bookPageProvider;
 
     /**
-     * b,c贝塞尔曲线的起点c
+     * PageProvider的内容变化时重新绑定所有的页
      */
-    private PointF c;
+    private Runnable pagesChanged;
 
     /**
-     * j,k贝塞尔曲线的起点j
+     * 后台还没有排版到要显示的页时代替它，只有背景色
      */
-    private PointF j;
+    private PageHolder placeholderPage;
 
     /**
-     * b,c贝塞尔曲线的终点b
+     * 显示了占位的页之后整体重画，直到换成排好的页
      */
-    private PointF b;
+    private Runnable placeholderRetry;
 
     /**
-     * j,k贝塞尔曲线的终点k
+     * 当前页的页码，B区域显示的是下一页
      */
-    private PointF k;
+    private int currentPage;
 
     /**
-     *b,c贝塞尔曲线上的点d，通过点d来确定背面的C区域
+     * 正在显示的书，没有设置时显示默认的文字
      */
-    private PointF d;
+    private volatile BookText book;
 
     /**
-     * j,k贝塞尔曲线上的点i，通过点i来确定背面的C区域
+     * 书的分页，在View有尺寸之后才创建，可能在PageRasterCache的后台线程中使用
      */
-    private PointF i;
+    private volatile Paginator paginator;
 
     /**
-     *用来进行缓存工作的bitmap
+     * 分页结果的磁盘索引，同样的排版条件下重新打开书时直接读取
      */
-    private Bitmap bitmap;
+    private PageIndexStore pageIndexStore;
 
     /**
-     * 在缓存的bitmap上面进行绘画的Canvas
+     * 后台读取或者建立索引的任务，排版条件变化时取消
      */
-    private Canvas bitmapCanvas;
+    private Future<?> pageIndexTask;
 
     /**
      * 当前页A的path，
      */
-    private Path pathA;
+    private CurlPath pathA;
 
     /**
      * 当前页A的paintA
@@ -122,12 +243,7 @@ public class PageTurnView extends View{
     /**
      * 当前页A的背景C的path
      */
-    private Path pathC;
-
-    /**
-     * 当前页A的背景C的paintC
-     */
-    private Paint paintC;
+    private CurlPath pathC;
 
     /**
      * 当前页的下一页B的path
@@ -165,15 +281,226 @@ public class PageTurnView extends View{
     private boolean bOrientation;
 
     /**
-     * 弹性的滑动
+     * 松手后的弹簧动画，由Choreographer的帧回调驱动
+     */
+    private TurnSettle settle;
+
+    private Choreographer.FrameCallback settleCallback;
+
+    /**
+     * 松手的时间，和Choreographer的帧时间是同一个时钟，单位为纳秒
      */
-    private Scroller scroller;
+    private long settleStartNanos;
+
+    /**
+     * 这次松手是翻到下一页还是回到当前页
+     */
+    private boolean completingTurn;
+
+    /**
+     * 甩动速度的范围，单位为像素每秒
+     */
+    private int minFlingVelocity;
+
+    private int maxFlingVelocity;
 
     /**
      * 内容的画笔
      */
     private Paint textPaint;
 
+    /**
+     * textPaint的副本，排版线程把它复制到每个PageHolder自己的画笔上，textPaint变化时替换
+     */
+    private volatile Paint pageTextPaint;
+
+    /**
+     * 每一帧各个阶段的耗时统计
+     */
+    private TurnMetrics metrics;
+
+    /**
+     * 绘制方式，RENDER_MODE_AUTO、RENDER_MODE_SOFTWARE或RENDER_MODE_HARDWARE
+     */
+    private int renderMode;
+
+    private int contentMode;
+
+    private CurlRenderer softwareRenderer;
+
+    private CurlRenderer hardwareRenderer;
+
+    private CurlRenderer meshRenderer;
+
+    /**
+     * B、C区域的阴影，渐变只生成一次
+     */
+    private CurlShadow curlShadow;
+
+    /**
+     * 圆柱翻页的网格，顶点和颜色数组每一帧重复使用
+     */
+    private CurlMesh curlMesh;
+
+    /**
+     * 不卷曲部分的裁剪区域
+     */
+    private CurlPath meshFlatPath;
+
+    /**
+     * MESH_TEXTURE缓冲区中合成的是哪一页，-1表示需要重新合成
+     */
+    private int meshTexturePage;
+
+    /**
+     * 每一帧结束时的回调
+     */
+    private TurnMetrics.OnFrameMetricsListener metricsListener;
+
+    /**
+     * 翻起部分在上一帧的范围，和这一帧的范围合起来就是需要重画的区域
+     */
+    private Rect lastCurlBounds;
+
+    /**
+     * 还没有重画的区域，由invalidateCurl累积
+     */
+    private Rect damage;
+
+    /**
+     * 这一帧在帧缓冲上实际重画的区域
+     */
+    private Rect frameClip;
+
+    private float[] curlBounds;
+
+    /**
+     * 软件绘制时B、C区域在REGION缓冲区中的范围
+     */
+    private RectF regionBoundsF;
+
+    private Rect regionBounds;
+
+    private Rect regionSource;
+
+    /**
+     * 帧缓冲中是否保存着上一次显示的完整画面
+     */
+    private boolean frameValid;
+
+    /**
+     * 帧缓冲中的画面是否是停在当前页时的画面，是的话没有变化时直接贴上去
+     */
+    private boolean frameAtRest;
+
+    /**
+     * 是否根据帧耗时在翻页过程中降级绘制
+     */
+    private boolean adaptiveQuality;
+
+    private QualityGovernor qualityGovernor;
+
+    /**
+     * 降级的缓冲区中是否保存着上一帧的画面
+     */
+    private boolean lodFrameValid;
+
+    private Rect lodClip;
+
+    private Rect lodSource;
+
+    private Rect lodDest;
+
+    /**
+     * 上一次触摸事件的位置，两次事件之间移动超过touchSlop时算作快速拖动
+     */
+    private float lastTouchX;
+
+    private float lastTouchY;
+
+    private boolean fastDrag;
+
+    private int touchSlop;
+
+    /**
+     * 估计手指的速度并预测位置
+     */
+    private TouchPredictor touchPredictor;
+
+    /**
+     * 预测多少毫秒之后的触摸位置，0表示不预测
+     */
+    private int predictionMillis;
+
+    private float[] touchPoint;
+
+    /**
+     * 是否已经安排在下一帧开始前应用触摸采样
+     */
+    private boolean inputScheduled;
+
+    private Runnable applyTouch;
+
+    /**
+     * 还没有应用到几何的最早的触摸时间，和已经应用、等待绘制的最早的触摸时间，单位为毫秒，0表示没有
+     */
+    private long pendingInputTime;
+
+    private long drawInputTime;
+
+    /**
+     * 不为null时记录所有的触摸事件，用来在测试中回放
+     */
+    private GestureLog gestureLog;
+
+    /**
+     * 是否在画面上显示耗时统计，只在debug版本中有效
+     */
+    private boolean metricsHud;
+
+    private Paint hudPaint;
+
+    private StringBuilder hudText;
+
+    private TurnMetrics.Snapshot hudSnapshot;
+
+    /**
+     * 是否允许快速翻阅
+     */
+    private boolean scrubEnabled;
+
+    /**
+     * 快速翻阅的进度，由Choreographer的帧回调推进
+     */
+    private TurnScrub scrub;
+
+    private Choreographer.FrameCallback scrubCallback;
+
+    /**
+     * 快速翻阅时使用的缩略图，没有开启快速翻阅时为null
+     */
+    private PageThumbnailCache thumbnailCache;
+
+    /**
+     * 第一次按下的位置，在右边缘按下时可能是沿边缘拖动
+     */
+    private float downX;
+
+    private float downY;
+
+    private boolean edgeCandidate;
+
+    /**
+     * 快速翻阅中是沿边缘上下拖动还是横向拖动
+     */
+    private boolean scrubAlongEdge;
+
+    private Paint thumbnailPaint;
+
+    private Rect thumbnailSource;
+
+    private Rect thumbnailDest;
+
 
     /**
      *
@@ -192,16 +519,61 @@ public class PageTurnView extends View{
         bRightBottom = false;
         bOrientation = false;
 
-        scroller = new Scroller(getContext(),new LinearInterpolator());
+        settle = new TurnSettle();
+        settleCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                stepSettle(frameTimeNanos);
+            }
+        };
+
+        bitmapBudget = BitmapBudget.get(getContext());
+        frameBufferPool = new FrameBufferPool(bitmapBudget);
+        frameBufferConsumer = new BitmapBudget.Consumer() {
+            @Override
+            public long trim(int priority, long bytes) {
+                if (priority != BitmapBudget.PRIORITY_VISIBLE){
+                    return 0;
+                }
+                long released = frameBufferPool.release();
+                meshTexturePage = -1;
+                invalidateFrame();
+                return released;
+            }
+        };
+        pageRasterCache = new PageRasterCache(bitmapBudget);
+        pagesChanged = new Runnable() {
+            @Override
+            public void run() {
+                pageRasterCache.invalidate();
+                if (thumbnailCache != null){
+                    thumbnailCache.invalidate(paintA.getColor());
+                }
+                meshTexturePage = -1;
+                invalidateFrame();
+            }
+        };
+        bookPageProvider = new BookPageProvider();
+        placeholderPage = new PageHolder();
+        placeholderPage.picture = new Picture();
+        placeholderRetry = new Runnable() {
+            @Override
+            public void run() {
+                meshTexturePage = -1;
+                invalidateFrame();
+            }
+        };
+        currentPage = 0;
+        pageIndexStore = new PageIndexStore(new File(context.getCacheDir(),"page_index"));
 
         paint = new Paint();
         paint.setStyle(Paint.Style.FILL);
         paint.setColor(Color.RED);
         paint.setAntiAlias(true);
 
-        pathA = new Path();
+        pathA = new CurlPath();
         pathB = new Path();
-        pathC = new Path();
+        pathC = new CurlPath();
 
         paintA = new Paint();
         paintA.setAntiAlias(true);
@@ -215,12 +587,7 @@ public class PageTurnView extends View{
         //设置自像素。如果该项为true，将有助于文本在LCD屏幕上的显示效果。
         textPaint.setSubpixelText(true);
         textPaint.setTextSize(30);
-
-        paintC = new Paint();
-        paintC.setAntiAlias(true);
-        paintC.setStyle(Paint.Style.FILL);
-        paintC.setColor(Color.RED);
-        paintC.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_ATOP));
+        pageTextPaint = new Paint(textPaint);
 
         paintB = new Paint();
         paintB.setAntiAlias(true);
@@ -228,365 +595,1212 @@ public class PageTurnView extends View{
         paintB.setColor(Color.BLUE);
         paintB.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_ATOP));
 
-        a = new PointF(0,0);
-        f = new PointF(0,0);
-        g = new PointF(0,0);
-        e = new PointF(0,0);
-        h = new PointF(0,0);
-        c = new PointF(0,0);
-        j = new PointF(0,0);
-        b = new PointF(0,0);
-        k = new PointF(0,0);
-        d = new PointF(0,0);
-        i = new PointF(0,0);
+        curl = new CurlGeometry();
+        reflectionMatrix = new Matrix();
+
+        metrics = new TurnMetrics();
+
+        renderMode = RENDER_MODE_AUTO;
+        contentMode = CONTENT_MODE_RASTER;
+        softwareRenderer = new SoftwareRenderer();
+        hardwareRenderer = new HardwareRenderer();
+        meshRenderer = new MeshRenderer();
+        curlMesh = new CurlMesh(DEFAULT_MESH_COLUMNS,DEFAULT_MESH_ROWS);
+        curlShadow = new CurlShadow();
+        meshFlatPath = new CurlPath();
+        meshTexturePage = -1;
+
+        lastCurlBounds = new Rect();
+        qualityGovernor = new QualityGovernor();
+        lodClip = new Rect();
+        lodSource = new Rect();
+        lodDest = new Rect();
+        ViewConfiguration configuration = ViewConfiguration.get(getContext());
+        touchSlop = configuration.getScaledTouchSlop();
+        minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        touchPredictor = new TouchPredictor();
+        touchPoint = new float[2];
+        applyTouch = new Runnable() {
+            @Override
+            public void run() {
+                applyTouch();
+            }
+        };
+        damage = new Rect();
+        frameClip = new Rect();
+        curlBounds = new float[4];
+        regionBoundsF = new RectF();
+        regionBounds = new Rect();
+        regionSource = new Rect();
+        scrub = new TurnScrub();
+        scrubCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                stepScrub(frameTimeNanos);
+            }
+        };
+        thumbnailPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        thumbnailSource = new Rect();
+        thumbnailDest = new Rect();
+        setPageProvider(null);
     }
 
-    @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        super.onSizeChanged(w, h, oldw, oldh);
-//        Log.d(TAG,"width:"+w);
-//        Log.d(TAG,"height:"+h);
-        a.x = w;
-        a.y = h;
+    /**
+     * 设置绘制方式，硬件加速绘制需要API 18以上，低版本会退回软件绘制
+     */
+    public void setRenderMode(int renderMode) {
+        this.renderMode = renderMode;
+        invalidateFrame();
     }
 
+    public int getRenderMode() {
+        return renderMode;
+    }
 
+    /**
+     * 设置页面内容的保存方式，CONTENT_MODE_RASTER或者CONTENT_MODE_PICTURE，已经绑定的页全部重新绑定
+     */
+    public void setContentMode(int contentMode) {
+        this.contentMode = contentMode;
+        updateRecording();
+    }
 
+    public int getContentMode() {
+        return contentMode;
+    }
 
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-
-      //  Log.d(TAG,"cc");
-
-        float x = event.getX();
-        float y = event.getY();
-//        Log.d(TAG,"x:"+x);
-//        Log.d(TAG,"y:"+y);
-
-
+    /**
+     * 根据内容模式、PageProvider和硬件加速决定是否把页面记录成Picture，
+     * 硬件加速的Canvas在API 23以下不支持drawPicture
+     */
+    private void updateRecording() {
+        boolean recording = contentMode == CONTENT_MODE_PICTURE && pageProvider.isRecordable()
+                && (!isHardwareAccelerated() || Build.VERSION.SDK_INT >= Build.VERSION_CODES.M);
+        pageRasterCache.setRecording(recording);
+        meshTexturePage = -1;
+        invalidateFrame();
+    }
 
-        //只判断一次，在第一次触摸时就会判断是右上翻动还是右下翻动
-        if (touch) {
-            touch = false;
-            if (y <= getHeight() / 3){
-                bRightTop = true;
-            } else if (y > getHeight() / 3 && y <= getHeight() * 2 / 3){
-                bOrientation = true;
-            } else if (y > getHeight() * 2 / 3 && y <= getHeight()) {
-                bRightBottom = true;
-            }
+    /**
+     * 设置页面内容的来源，从第一页开始，传入null时显示setBook设置的书
+     */
+    public void setPageProvider(PageProvider provider) {
+        if (provider == null){
+            provider = bookPageProvider;
         }
-        if (bRightTop){
-            f.x = getWidth();
-            f.y = 0;
+        if (pageProvider != null){
+            pageProvider.setObserver(null);
+            unregisterConsumer(pageProvider.getBitmapConsumer());
         }
-        if (bRightBottom){
-            f.x = getWidth();
-            f.y = getHeight();
+        pageProvider = provider;
+        provider.setObserver(pagesChanged);
+        if (attached){
+            registerConsumer(provider.getBitmapConsumer());
         }
+        pageRasterCache.setProvider(provider);
+        if (thumbnailCache != null){
+            thumbnailCache.setProvider(provider);
+        }
+        cancelScrub();
+        currentPage = 0;
+        updateRecording();
+    }
 
-        a.x = x;
-        a.y = y;
-
+    public PageProvider getPageProvider() {
+        return pageProvider != bookPageProvider ? pageProvider : null;
+    }
 
-//        Log.d(TAG,"a.y:"+a.y);
+    /**
+     * 开启堆外的页面缓存，离开预取窗口的页保存在缓存目录中映射到内存的临时文件里，翻回来时直接恢复，最多使用maxBytes字节。
+     * rgb565为true时每页的内存减半，但是透明的部分会合成到当前页的背景色上。系统内存紧张时全部释放。传入0关闭
+     */
+    public void setOffHeapPageCache(int maxBytes,boolean rgb565) {
+        unregisterConsumer(pageBufferStore);
+        pageBufferStore = maxBytes > 0 ? new PageBufferStore(getContext().getCacheDir(),maxBytes,rgb565,paintA.getColor()) : null;
+        if (attached){
+            registerConsumer(pageBufferStore);
+        }
+        pageRasterCache.setStore(pageBufferStore);
+    }
 
-        caclData();
+    /**
+     * 堆外页面缓存占用的字节数，包括池中空闲的缓冲区，没有开启时为0
+     */
+    public long getOffHeapPageCacheBytes() {
+        return pageBufferStore != null ? pageBufferStore.getMemoryBytes() : 0;
+    }
 
-        if (caclCX(x,y,f) < 0){
-            //如果c点x坐标小于0则重新测量临界的a点坐标
-            caclCrisisA();
-            caclData();
+    /**
+     * 设置要显示的书，从第一页开始，只有显示到的页才会分页，已经设置的PageProvider会被替换
+     */
+    public void setBook(BookText book) {
+        this.book = book;
+        if (pageProvider != bookPageProvider){
+            setPageProvider(null);
         }
+        currentPage = 0;
+        textPaint.setTextAlign(book != null ? Paint.Align.LEFT : Paint.Align.CENTER);
+        rebuildPaginator();
+        invalidateFrame();
+    }
 
-        if (bOrientation){
-            Log.d(TAG,"ccc");
-            a.y = getHeight() - 3;
-            f.x = getWidth();
-            f.y = getHeight();
-            caclData();
-            postInvalidate();
+    /**
+     * 设置文字的大小，会重新分页，正在后台进行的排版和绘制全部取消
+     */
+    public void setTextSize(float textSize) {
+        if (textPaint.getTextSize() == textSize){
+            return;
+        }
+        textPaint.setTextSize(textSize);
+        rebuildPaginator();
+        invalidateFrame();
+    }
 
+    /**
+     * 跳到某一页，索引中已经有这一页的起始位置时不需要排版前面的页。页数已经确定时超出的跳到最后一页
+     */
+    public void setCurrentPage(int page) {
+        cancelScrub();
+        int pageCount = getPageCount();
+        if (pageCount >= 0){
+            page = Math.min(page,pageCount - 1);
         }
+        currentPage = Math.max(0,page);
+        meshTexturePage = -1;
+        invalidateFrame();
+    }
 
+    public int getCurrentPage() {
+        return currentPage;
+    }
 
+    /**
+     * 总页数，还不确定时（比如书还没有排版到结尾）为-1
+     */
+    public int getPageCount() {
+        return pageProvider.getPageCount();
+    }
+
+    /**
+     * 根据书和View的尺寸重新分页，已经绘制的页面全部失效
+     * 同时在后台读取这个排版条件下的索引，没有完整的索引时在后台排版整本书
+     */
+    private void rebuildPaginator(){
+        //先让后台的旧任务作废，再关闭旧的分页
+        pageRasterCache.invalidate();
+        if (thumbnailCache != null){
+            thumbnailCache.invalidate(paintA.getColor());
+        }
+        frameValid = false;
+        pageTextPaint = new Paint(textPaint);
+        closePaginator();
+        if (book != null && getWidth() > 0 && getHeight() > 0){
+            //排版线程和UI线程都会通过paginator断行，用单独的画笔
+            TextMeasurer measurer = new TextPaintMeasurer(new Paint(textPaint));
+            float lineWidth = getWidth() - PAGE_MARGIN * 2;
+            int linesPerPage = Math.max(1,(int) ((getHeight() - PAGE_MARGIN * 2) / measurer.lineHeight()));
+            Paginator paginator = new Paginator(book,measurer,lineWidth,linesPerPage);
+            this.paginator = paginator;
+
+            Typeface typeface = textPaint.getTypeface();
+            String font = (typeface != null ? typeface.getStyle() : Typeface.NORMAL) + "/" + measurer.lineHeight();
+            String key = PageIndexStore.layoutKey(book.fingerprint(),font,textPaint.getTextSize(),lineWidth,linesPerPage);
+            //后台排版用单独的Paginator和textPaint的副本，不和绘制抢锁
+            Paginator builder = new Paginator(book,new TextPaintMeasurer(new Paint(textPaint)),lineWidth,linesPerPage);
+            pageIndexTask = pageIndexStore.loadOrBuild(key,paginator,builder);
+        }
+        meshTexturePage = -1;
+    }
+
+    private void closePaginator(){
+        if (pageIndexTask != null){
+            pageIndexTask.cancel(true);
+            pageIndexTask = null;
+        }
+        Paginator old = paginator;
+        paginator = null;
+        if (old != null){
+            try {
+                old.close();
+            } catch (IOException e) {
+                Log.w(TAG,"failed to close book",e);
+            }
+        }
+    }
+
+    /**
+     * 设置阴影的质量，SHADOW_QUALITY_NONE、SHADOW_QUALITY_FLAT或SHADOW_QUALITY_GRADIENT
+     */
+    public void setShadowQuality(int quality) {
+        curlShadow.setQuality(quality);
+        invalidateFrame();
+    }
+
+    public int getShadowQuality() {
+        return curlShadow.getQuality();
+    }
+
+    /**
+     * 设置是否自适应质量，开启后快速拖动和松手后的动画中，如果最近的帧超出预算，
+     * 就在一半尺寸的RGB_565缓冲上不带阴影地绘制再放大，停下时恢复全质量
+     */
+    public void setAdaptiveQuality(boolean enabled) {
+        adaptiveQuality = enabled;
+        qualityGovernor.reset();
+        invalidateFrame();
+    }
+
+    public boolean isAdaptiveQuality() {
+        return adaptiveQuality;
+    }
+
+    /**
+     * 设置是否允许快速翻阅，开启后连续快速翻页，或者在右边缘按下沿边缘上下拖动时，
+     * 用后台生成的低分辨率缩略图和简化的卷曲一秒翻过几十页，停下之后换回全分辨率的页。
+     * 缩略图从BitmapBudget按缓存的优先级分配，关闭时全部释放
+     */
+    public void setScrubEnabled(boolean enabled) {
+        if (scrubEnabled == enabled){
+            return;
+        }
+        scrubEnabled = enabled;
+        if (enabled){
+            thumbnailCache = new PageThumbnailCache(bitmapBudget,paintA.getColor());
+            thumbnailCache.setProvider(pageProvider);
+            thumbnailCache.resize(getWidth(),getHeight());
+            if (attached){
+                registerConsumer(thumbnailCache);
+            }
+        }else {
+            cancelScrub();
+            unregisterConsumer(thumbnailCache);
+            thumbnailCache.release();
+            thumbnailCache = null;
+        }
+        invalidate();
+    }
+
+    public boolean isScrubEnabled() {
+        return scrubEnabled;
+    }
+
+    /**
+     * 是否正在快速翻阅
+     */
+    boolean isScrubbing() {
+        return scrub.isActive();
+    }
+
+    /**
+     * 设置触摸预测的时间，拖动时折痕跟随的是手指在这么多毫秒之后的预测位置，0表示不预测
+     */
+    public void setTouchPrediction(int millis) {
+        predictionMillis = Math.max(0,Math.min(millis,TouchPredictor.MAX_PREDICTION_MILLIS));
+    }
+
+    public int getTouchPrediction() {
+        return predictionMillis;
+    }
+
+    /**
+     * 开始把触摸事件记录到log中，传入null停止记录
+     */
+    public void setGestureLog(GestureLog log) {
+        gestureLog = log;
+    }
+
+    /**
+     * 停在当前页，没有拖动也没有松手动画
+     */
+    boolean isAtRest() {
+        return touch && !settle.isRunning();
+    }
+
+    /**
+     * 设置网格绘制时横向和纵向的格数，格数越多卷曲越平滑，顶点计算也越多
+     */
+    public void setMeshDensity(int columns,int rows) {
+        curlMesh.setDensity(columns,rows);
+        invalidateFrame();
+    }
+
+    private void registerConsumer(BitmapBudget.Consumer consumer){
+        if (consumer != null){
+            bitmapBudget.register(consumer);
+        }
+    }
+
+    private void unregisterConsumer(BitmapBudget.Consumer consumer){
+        if (consumer != null){
+            bitmapBudget.unregister(consumer);
+        }
+    }
+
+    /**
+     * 画面需要整体重画，比如换了书、页码或者绘制方式
+     */
+    private void invalidateFrame(){
+        frameValid = false;
+        lodFrameValid = false;
+        invalidate();
+    }
+
+    /**
+     * 只重画翻起部分这一帧和上一帧的范围，停在当前页时不会调用
+     */
+    private void invalidateCurl(){
+        curl.curlBounds(curlBounds);
+        //留出抗锯齿和C区域阴影偏移的余量
+        int margin = 32;
+        int left = Math.max(0,(int) Math.floor(curlBounds[0]) - margin);
+        int top = Math.max(0,(int) Math.floor(curlBounds[1]) - margin);
+        int right = Math.min(getWidth(),(int) Math.ceil(curlBounds[2]) + margin);
+        int bottom = Math.min(getHeight(),(int) Math.ceil(curlBounds[3]) + margin);
+        damage.union(lastCurlBounds);
+        damage.union(left,top,right,bottom);
+        lastCurlBounds.set(left,top,right,bottom);
+        invalidate(damage);
+    }
+
+    private CurlRenderer selectRenderer(Canvas canvas){
+        //API 18以下硬件加速不支持clipPath
+        boolean hardwareClip = canvas.isHardwareAccelerated()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        switch (renderMode){
+            case RENDER_MODE_HARDWARE:
+                //软件Canvas支持所有的裁剪方式，只有低版本的硬件加速需要退回
+                return hardwareClip || !canvas.isHardwareAccelerated() ? hardwareRenderer : softwareRenderer;
+            case RENDER_MODE_SOFTWARE:
+                return softwareRenderer;
+            case RENDER_MODE_MESH:
+                return meshRenderer;
+            default:
+                return hardwareClip ? hardwareRenderer : softwareRenderer;
+        }
+    }
+
+    /**
+     * 获取翻页的耗时统计，可以随时调用snapshot轮询
+     */
+    public TurnMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置每一帧结束时的回调，回调在UI线程执行，不要在里面做耗时操作
+     */
+    public void setOnFrameMetricsListener(TurnMetrics.OnFrameMetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    /**
+     * 在画面左上角显示各个阶段的耗时，只在debug版本中有效
+     */
+    public void setMetricsHudEnabled(boolean enabled) {
+        if (!BuildConfig.DEBUG){
+            return;
+        }
+        metricsHud = enabled;
+        if (enabled && hudPaint == null){
+            hudPaint = new Paint();
+            hudPaint.setColor(Color.GREEN);
+            hudPaint.setTextSize(24);
+            hudPaint.setAntiAlias(true);
+            hudText = new StringBuilder();
+            hudSnapshot = new TurnMetrics.Snapshot();
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+//        Log.d(TAG,"width:"+w);
+//        Log.d(TAG,"height:"+h);
+        curl.set(A,w,h);
+        frameBufferPool.resize(w,h);
+        curlShadow.resize(w,h);
+        pageRasterCache.resize(w,h);
+        if (thumbnailCache != null){
+            thumbnailCache.resize(w,h);
+        }
+        rebuildPaginator();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        registerConsumer(frameBufferConsumer);
+        registerConsumer(pageRasterCache);
+        registerConsumer(pageProvider.getBitmapConsumer());
+        registerConsumer(thumbnailCache);
+        registerConsumer(pageBufferStore);
+        //附加到窗口之后才知道是否开启了硬件加速
+        updateRecording();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        unregisterConsumer(frameBufferConsumer);
+        unregisterConsumer(pageRasterCache);
+        unregisterConsumer(pageProvider.getBitmapConsumer());
+        unregisterConsumer(thumbnailCache);
+        unregisterConsumer(pageBufferStore);
+        frameBufferPool.release();
+        pageRasterCache.release();
+        if (thumbnailCache != null){
+            thumbnailCache.release();
+        }
+        closePaginator();
+        pageIndexStore.release();
+        meshTexturePage = -1;
+        frameValid = false;
+        lodFrameValid = false;
+        removeCallbacks(applyTouch);
+        removeCallbacks(placeholderRetry);
+        inputScheduled = false;
+        if (settle.isRunning()){
+            //不再有帧回调，直接停在当前页
+            stopSettle();
+            touch = true;
+            lastCurlBounds.setEmpty();
+        }
+        //停在快速翻阅的当前页
+        cancelScrub();
+    }
+
+
+
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (scrub.isActive()){
+            return onScrubTouchEvent(event);
+        }
+        float x = event.getX();
+        float y = event.getY();
+
+        if (event.getAction() == MotionEvent.ACTION_DOWN && settle.isRunning()){
+            stopSettle();
+            if (completingTurn){
+                //已经决定翻过去的页直接翻完，这次按下从头开始翻下一页，连续甩动时每次都翻过一页
+                currentPage++;
+                touch = true;
+                lastCurlBounds.setEmpty();
+                meshTexturePage = -1;
+                invalidateFrame();
+            }else {
+                //回到原处的动画中按下时接住正在翻动的页，从当前的位置继续拖动
+                lastTouchX = x;
+                lastTouchY = y;
+                fastDrag = false;
+                touchPredictor.reset();
+                edgeCandidate = false;
+            }
+        }
+
+        //只判断一次，在第一次触摸时就会判断是右上翻动还是右下翻动
+        if (touch) {
+            touch = false;
+            if (y <= getHeight() / 3){
+                bRightTop = true;
+            } else if (y > getHeight() / 3 && y <= getHeight() * 2 / 3){
+                bOrientation = true;
+            } else if (y > getHeight() * 2 / 3 && y <= getHeight()) {
+                bRightBottom = true;
+            }
+            lastTouchX = x;
+            lastTouchY = y;
+            fastDrag = false;
+            touchPredictor.reset();
+            downX = x;
+            downY = y;
+            edgeCandidate = scrubEnabled && x >= getWidth() - touchSlop * SCRUB_EDGE_SLOPS;
+        }
+        if (bRightTop){
+            curl.set(F,getWidth(),0);
+        }
+        if (bRightBottom){
+            curl.set(F,getWidth(),getHeight());
+        }
+
+        //历史采样只用来估计速度，几何只按最新的位置计算
+        GestureLog gestureLog = this.gestureLog;
+        if (gestureLog != null){
+            gestureLog.beginEvent(event.getAction());
+        }
+        int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            touchPredictor.addSample(event.getHistoricalEventTime(i),event.getHistoricalX(i),event.getHistoricalY(i));
+            if (gestureLog != null){
+                gestureLog.addSample(event.getHistoricalEventTime(i),event.getHistoricalX(i),event.getHistoricalY(i));
+            }
+        }
+        touchPredictor.addSample(event.getEventTime(),x,y);
+        if (gestureLog != null){
+            gestureLog.addSample(event.getEventTime(),x,y);
+        }
+        if (pendingInputTime == 0){
+            pendingInputTime = historySize > 0 ? event.getHistoricalEventTime(0) : event.getEventTime();
+        }
+
+        if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.TOUCH,x,y);
 
         switch (event.getAction()){
             case MotionEvent.ACTION_MOVE:
-                invalidate();
-                Log.d(TAG,"ababbaba");
+                if (edgeCandidate && startEdgeScrub(x,y,event.getEventTime())){
+                    return true;
+                }
+                fastDrag = Math.hypot(x - lastTouchX,y - lastTouchY) > touchSlop;
+                lastTouchX = x;
+                lastTouchY = y;
+                //同一个vsync中的事件合并到下一帧开始前，只更新一次几何
+                if (!inputScheduled){
+                    inputScheduled = true;
+                    postOnAnimation(applyTouch);
+                }
                 return true;
             case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                //松手时立即使用真实的位置，不再预测
+                removeCallbacks(applyTouch);
+                inputScheduled = false;
+                updateCurl(x,y);
+                drawInputTime = pendingInputTime;
+                pendingInputTime = 0;
                 cMax = false;
                 bRightBottom = false;
                 bRightTop = false;
                 bOrientation = false;
-                //让a滑动到f点所在位置，留出1像素是为了防止当a和f重叠时出现View闪烁的情况
-                scroller.startScroll((int) a.x,(int) a.y,(int) (f.x- a.x - 1),(int) (f.y - a.y - 1),400);
-                invalidate();
+                startSettle(event.getAction() == MotionEvent.ACTION_UP,event.getEventTime());
+                invalidateCurl();
+                if (completingTurn && scrubEnabled && scrub.onTurnCompleted(event.getEventTime() * 1000000L)){
+                    //连续快速翻页，这一页交给快速翻阅接着翻过去
+                    stopSettle();
+                    startScrub(event.getEventTime(),(getWidth() - 1 - curl.x(A)) / (getWidth() * 2 - 1));
+                    scrubAlongEdge = false;
+                    scrub.turn(1);
+                }
                 return true;
         }
+        //按下时还不会重画，不计入输入延迟
+        updateCurl(x,y);
+        pendingInputTime = 0;
         return true;
     }
 
-    @Override
-    public void computeScroll() {
-
-        if (scroller.computeScrollOffset()){
-            a.x = scroller.getCurrX();
-            a.y = scroller.getCurrY();
-            Log.d(TAG,"aax"+a.x);
-            Log.d(TAG,"aay"+a.y);
-            caclData();
-            invalidate();
-            Log.d(TAG,"acscga");
-            if (scroller.getFinalX() == a.x && scroller.getFinalY() == a.y){
-                touch = true;
-                invalidate();
+    /**
+     * 在下一帧开始前把合并的触摸采样应用到几何，开启预测时使用预测的位置
+     */
+    private void applyTouch(){
+        inputScheduled = false;
+        if (touch){
+            return;
+        }
+        float x = lastTouchX;
+        float y = lastTouchY;
+        if (predictionMillis > 0){
+            touchPoint[0] = x;
+            touchPoint[1] = y;
+            touchPredictor.predict(predictionMillis,touchPoint);
+            x = Math.max(0,Math.min(touchPoint[0],getWidth()));
+            y = Math.max(0,Math.min(touchPoint[1],getHeight()));
+        }
+        updateCurl(x,y);
+        drawInputTime = pendingInputTime;
+        pendingInputTime = 0;
+        invalidateCurl();
+        if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.MOVE,curl.x(A),curl.y(A));
+    }
+
+    /**
+     * 根据触摸点更新翻页的几何
+     */
+    private void updateCurl(float x,float y){
+        metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+        if (bOrientation){
+            //横向翻页时a贴着底边，f在右下角
+            curl.set(A,x,getHeight() - 3);
+            curl.set(F,getWidth(),getHeight());
+            if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.ORIENTATION,curl.x(A),curl.y(A));
+        }else {
+            curl.set(A,x,y);
+        }
+        calculateCurl();
+        metrics.end(TurnMetrics.PHASE_GEOMETRY);
+    }
+
+    /**
+     * 从a、f计算其它各点，只有c点超出左边时才会多算一次c点
+     */
+    private void calculateCurl(){
+        float cx = curl.calculateCX(curl.x(A),curl.y(A));
+        if (cx < 0){
+            //如果c点x坐标小于0则重新测量临界的a点坐标，calculateCrisisA只用到a、f和c
+            curl.set(C,cx,curl.y(F));
+            curl.calculateCrisisA(getWidth());
+        }
+        curl.calculate();
+    }
+
+    /**
+     * 松手后开始弹簧动画，根据甩动的速度和位置决定翻过去还是回到原处
+     */
+    private void startSettle(boolean released,long eventTime){
+        float velocityX = clampVelocity(touchPredictor.velocityX() * 1000);
+        float velocityY = clampVelocity(touchPredictor.velocityY() * 1000);
+        completingTurn = released && canTurnForward()
+                && TurnSettle.shouldComplete(curl.x(A),getWidth(),velocityX,minFlingVelocity);
+        //y离f点留出1像素，a和f在同一水平线上时h点在无穷远处
+        float targetY = curl.y(F) == 0 ? 1 : curl.y(F) - 1;
+        if (completingTurn){
+            //a移到左边一个View宽的位置，当前页整个翻过去
+            settle.start(curl.x(A),curl.y(A),velocityX,velocityY,-getWidth(),targetY);
+        }else {
+            //让a回到f点所在位置，留出1像素是为了防止当a和f重叠时出现View闪烁的情况
+            settle.start(curl.x(A),curl.y(A),velocityX,velocityY,curl.x(F) - 1,curl.y(F) == 0 ? -1 : curl.y(F) - 1);
+        }
+        settleStartNanos = eventTime * 1000000L;
+        Choreographer.getInstance().postFrameCallback(settleCallback);
+    }
+
+    /**
+     * 每一帧计算a点的位置，动画停止时不再请求下一帧
+     */
+    private void stepSettle(long frameTimeNanos){
+        metrics.begin(TurnMetrics.PHASE_SCROLL);
+        boolean running = settle.update(frameTimeNanos - settleStartNanos);
+        curl.set(A,settle.x(),settle.y());
+        if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.SCROLL,curl.x(A),curl.y(A));
+        metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+        curl.calculate();
+        metrics.end(TurnMetrics.PHASE_GEOMETRY);
+        if (running){
+            invalidateCurl();
+            Choreographer.getInstance().postFrameCallback(settleCallback);
+        }else {
+            if (TurnTrace.ENABLED) TurnTrace.record(TurnTrace.SCROLL_END,curl.x(A),curl.y(A));
+            touch = true;
+            if (completingTurn){
+                //翻到了下一页，整个画面都要重画
+                currentPage++;
+                invalidateFrame();
+            }else {
+                invalidateCurl();
             }
+            //下一次翻页从空的范围开始
+            lastCurlBounds.setEmpty();
         }
+        metrics.endScroll();
     }
 
+    /**
+     * 停止动画，a点停在当前的位置
+     */
+    private void stopSettle(){
+        Choreographer.getInstance().removeFrameCallback(settleCallback);
+        settle.cancel();
+    }
+
+    /**
+     * 是否还有下一页，页数还不确定时认为有
+     */
+    private boolean canTurnForward(){
+        int pageCount = getPageCount();
+        return pageCount < 0 || currentPage + 1 < pageCount;
+    }
+
+    private float clampVelocity(float velocity){
+        return Math.max(-maxFlingVelocity,Math.min(velocity,maxFlingVelocity));
+    }
+
+    /**
+     * 在右边缘按下之后，主要是上下移动并且超过两个touchSlop时开始沿边缘的快速翻阅，横向移动时不再判断
+     */
+    private boolean startEdgeScrub(float x,float y,long eventTime){
+        float dx = Math.abs(x - downX);
+        float dy = Math.abs(y - downY);
+        if (dy > touchSlop * 2 && dx < dy / 2){
+            edgeCandidate = false;
+            startScrub(eventTime,0);
+            scrubAlongEdge = true;
+            //从按下的位置算起，已经移动的距离也算数
+            scrub.beginDrag(downY,touchSlop * SCRUB_EDGE_STEP_SLOPS);
+            scrub.drag(y);
+            return true;
+        }
+        if (dx > touchSlop){
+            edgeCandidate = false;
+        }
+        return false;
+    }
+
+    /**
+     * 从当前页开始快速翻阅，正在翻的页交给快速翻阅的简化卷曲，progress是它已经翻过去的比例
+     */
+    private void startScrub(long eventTime,float progress){
+        removeCallbacks(applyTouch);
+        inputScheduled = false;
+        pendingInputTime = 0;
+        touch = false;
+        cMax = false;
+        bRightBottom = false;
+        bRightTop = false;
+        bOrientation = false;
+        scrub.start(currentPage + Math.max(0,Math.min(progress,0.99f)),getPageCount(),eventTime * 1000000L);
+        lastCurlBounds.setEmpty();
+        Choreographer.getInstance().postFrameCallback(scrubCallback);
+        invalidateFrame();
+    }
+
+    /**
+     * 快速翻阅中的触摸：在右边缘按下时上下拖动，向下翻到后面的页；在别处按下时横向拖动，向左翻到后面的页
+     */
+    private boolean onScrubTouchEvent(MotionEvent event){
+        float x = event.getX();
+        float y = event.getY();
+        GestureLog gestureLog = this.gestureLog;
+        if (gestureLog != null){
+            gestureLog.beginEvent(event.getAction());
+            gestureLog.addSample(event.getEventTime(),x,y);
+        }
+        switch (event.getAction()){
+            case MotionEvent.ACTION_DOWN:
+                scrubAlongEdge = x >= getWidth() - touchSlop * SCRUB_EDGE_SLOPS;
+                scrub.setPageCount(getPageCount());
+                if (scrubAlongEdge){
+                    scrub.beginDrag(y,touchSlop * SCRUB_EDGE_STEP_SLOPS);
+                }else {
+                    scrub.beginDrag(getWidth() - x,(float) getWidth() / SCRUB_PAGES_PER_WIDTH);
+                }
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                scrub.drag(scrubAlongEdge ? y : getWidth() - x);
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                scrub.endDrag(event.getEventTime() * 1000000L);
+                return true;
+        }
+        return true;
+    }
+
+    /**
+     * 每一帧推进快速翻阅的位置，后台按翻阅的方向生成缩略图，松手之后提前准备要停下的那一页
+     */
+    private void stepScrub(long frameTimeNanos){
+        if (scrub.update(frameTimeNanos)){
+            thumbnailCache.prefetchAround(scrub.page(),scrub.isBackward());
+            if (!scrub.isDragging()){
+                pageRasterCache.prefetchAround(scrub.targetPage());
+            }
+            invalidate();
+            Choreographer.getInstance().postFrameCallback(scrubCallback);
+        }else {
+            finishScrub();
+        }
+    }
+
+    /**
+     * 立即结束快速翻阅，停在最近的整页上
+     */
+    private void cancelScrub(){
+        if (!scrub.isActive()){
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(scrubCallback);
+        scrub.cancel();
+        finishScrub();
+    }
+
+    /**
+     * 停在快速翻阅的当前页，换回全分辨率的页面整体重画
+     */
+    private void finishScrub(){
+        currentPage = scrub.page();
+        touch = true;
+        lastCurlBounds.setEmpty();
+        meshTexturePage = -1;
+        invalidateFrame();
+    }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        bitmap = Bitmap.createBitmap(getWidth(),getHeight(), Bitmap.Config.ARGB_8888);
-        bitmapCanvas = new Canvas(bitmap);
-        if (touch){
-          //  Log.d(TAG,"aa");
-           // bitmapCanvas.drawPath(drawA(),paintA);
-            drawPathAText(bitmapCanvas,drawA(),paintA);
+        if (!frameBufferPool.isReady()){
+            return;
+        }
+        metrics.beginFrame();
+        long frameStart = System.nanoTime();
+        if (scrub.isActive()){
+            drawScrub(canvas);
+            frameValid = false;
+            frameAtRest = false;
+            lodFrameValid = false;
+            damage.setEmpty();
+            endFrame(canvas);
+            return;
+        }
+        if (isDegradedFrame()){
+            drawDegraded(canvas);
+            frameValid = false;
+            frameAtRest = false;
+            damage.setEmpty();
+            qualityGovernor.record(System.nanoTime() - frameStart,true);
+            endFrame(canvas);
+            return;
+        }
+        CurlRenderer renderer = selectRenderer(canvas);
+        Canvas target = canvas;
+        frameClip.set(0,0,getWidth(),getHeight());
+        boolean reuse = false;
+        if (renderer.usesFrameBuffer()){
+            target = frameBufferPool.obtainCanvas(FrameBufferPool.FRAME);
+            //停在当前页并且画面没有变化时，直接贴上缓存的画面
+            reuse = touch && frameValid && frameAtRest;
+            if (!reuse){
+                //整帧的缓冲区是重复使用的，只清空需要重画的部分
+                if (frameValid && !damage.isEmpty()){
+                    frameClip.set(damage);
+                }
+                target.save();
+                target.clipRect(frameClip);
+                target.drawColor(Color.TRANSPARENT,PorterDuff.Mode.CLEAR);
+            }
+        }
+        if (reuse){
+            //不需要重画
+        }else if (touch){
+            renderer.drawRest(target);
+            //停在当前页时在后台排版和绘制前后的页
+            pageRasterCache.prefetchAround(currentPage);
+            if (thumbnailCache != null){
+                thumbnailCache.prefetchAround(currentPage,false);
+            }
         }else {
-          //  Log.d(TAG,"bb");
-            //画A区域
-            if (f.y == 0){
-                //bitmapCanvas.drawPath(drawARightTop(),paintA);
-                drawPathAText(bitmapCanvas,drawARightTop(),paintA);
-                bitmapCanvas.drawPath(drawC(),paintC);
-                //bitmapCanvas.drawPath(drawC(),paintC);
-                drawPathCText(bitmapCanvas,drawARightTop(),paint);
-                drawPathBText(bitmapCanvas,drawARightTop(),paintB);
-            }else {
-               // bitmapCanvas.drawPath(drawARightBottom(),paintA);
-                drawPathAText(bitmapCanvas,drawARightBottom(),paintA);
-                bitmapCanvas.drawPath(drawC(),paintC);
-               // bitmapCanvas.drawPath(drawC(),paintC);
-                drawPathCText(bitmapCanvas,drawARightBottom(),paint);
-                drawPathBText(bitmapCanvas,drawARightBottom(),paintB);
+            metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+            Path pathA = curl.y(F) == 0 ? drawARightTop() : drawARightBottom();
+            drawC();
+            metrics.end(TurnMetrics.PHASE_GEOMETRY);
+            renderer.drawCurl(target,pathA,pathC);
+        }
+
+        if (renderer.usesFrameBuffer()){
+            if (!reuse){
+                target.restore();
             }
-            //画C区域
-//            bitmapCanvas.drawPath(drawC(),paintC);
-            //画B区域
-           // bitmapCanvas.drawPath(drawB(),paintB);
-            //drawPathBText(bitmapCanvas,drawB(),paintB);
+            //在画布上导入已经有了的bitmap图片，null表示没有画笔
+            canvas.drawBitmap(frameBufferPool.getBitmap(FrameBufferPool.FRAME),0,0,null);
+        }
+        //硬件加速绘制没有更新帧缓冲
+        frameValid = renderer.usesFrameBuffer();
+        frameAtRest = touch;
+        lodFrameValid = false;
+        damage.setEmpty();
+        if (adaptiveQuality && !touch){
+            qualityGovernor.record(System.nanoTime() - frameStart,false);
+        }
+        endFrame(canvas);
+    }
+
+    /**
+     * 结束这一帧的统计，通知监听并绘制耗时统计
+     */
+    private void endFrame(Canvas canvas){
+        metrics.endFrame();
+        if (drawInputTime != 0){
+            metrics.recordInputLatency((SystemClock.uptimeMillis() - drawInputTime) * 1000000L);
+            drawInputTime = 0;
+        }
+        if (metricsListener != null){
+            metricsListener.onFrameMetrics(metrics);
+        }
+        if (metricsHud){
+            drawMetricsHud(canvas);
+        }
+    }
+
+    /**
+     * 这一帧是否降级绘制：开启了自适应质量，正在快速拖动或者松手后的动画中，并且最近的帧超出了预算
+     */
+    private boolean isDegradedFrame(){
+        return adaptiveQuality && !touch && qualityGovernor.isDegraded()
+                && (fastDrag || settle.isRunning());
+    }
+
+    /**
+     * 降级绘制：在一半尺寸的RGB_565缓冲上只用INTERSECT、DIFFERENCE裁剪绘制，没有抗锯齿和阴影，
+     * 再放大贴到View上。缓冲区中保存着上一帧的降级画面时只重画翻起部分
+     */
+    private void drawDegraded(Canvas canvas){
+        Canvas target = frameBufferPool.obtainCanvas(FrameBufferPool.LOD_FRAME);
+        Bitmap lodFrame = frameBufferPool.getBitmap(FrameBufferPool.LOD_FRAME);
+        int divisor = FrameBufferPool.LOD_DIVISOR;
+        target.save();
+        if (lodFrameValid && !damage.isEmpty()){
+            lodClip.set(damage.left / divisor,damage.top / divisor,
+                    (damage.right + divisor - 1) / divisor,(damage.bottom + divisor - 1) / divisor);
+            target.clipRect(lodClip);
+        }
+        target.scale(1f / divisor,1f / divisor);
+        metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+        Path pathA = curl.y(F) == 0 ? drawARightTop() : drawARightBottom();
+        drawC();
+        metrics.end(TurnMetrics.PHASE_GEOMETRY);
+        curlShadow.setSuppressed(true);
+        hardwareRenderer.drawCurl(target,pathA,pathC);
+        curlShadow.setSuppressed(false);
+        target.restore();
+        lodSource.set(0,0,lodFrame.getWidth(),lodFrame.getHeight());
+        lodDest.set(0,0,getWidth(),getHeight());
+        canvas.drawBitmap(lodFrame,lodSource,lodDest,null);
+        lodFrameValid = true;
+    }
+
+    /**
+     * 快速翻阅的一帧：在一半尺寸的RGB_565缓冲上贴缩略图，当前页只裁剪出A区域，背面C只填充颜色，
+     * 没有镜像和阴影，再放大贴到View上。a沿着和翻过一页的动画一样的弧线从右下角移到左边一个View宽的位置
+     */
+    private void drawScrub(Canvas canvas){
+        Canvas target = frameBufferPool.obtainCanvas(FrameBufferPool.LOD_FRAME);
+        Bitmap lodFrame = frameBufferPool.getBitmap(FrameBufferPool.LOD_FRAME);
+        int divisor = FrameBufferPool.LOD_DIVISOR;
+        int level = scrub.rate() > SCRUB_COARSE_RATE ? PageThumbnailCache.LEVEL_COARSE : PageThumbnailCache.LEVEL_FINE;
+        int page = scrub.page();
+        float fraction = scrub.fraction();
+        target.save();
+        target.scale(1f / divisor,1f / divisor);
+        if (fraction > 0){
+            metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+            curl.calculateScrub(fraction,getWidth(),getHeight());
+            Path pathA = drawARightBottom();
+            drawC();
+            metrics.end(TurnMetrics.PHASE_GEOMETRY);
+            metrics.begin(TurnMetrics.PHASE_CONTENT);
+            drawThumbnail(target,page + 1,level);
+            metrics.end(TurnMetrics.PHASE_CONTENT);
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            target.save();
+            target.clipPath(pathA);
+            drawThumbnail(target,page,level);
+            target.restore();
+            target.save();
+            target.clipPath(pathC);
+            target.clipPath(pathA,Region.Op.DIFFERENCE);
+            target.drawColor(paint.getColor());
+            target.restore();
+            metrics.end(TurnMetrics.PHASE_CLIP);
+        }else {
+            metrics.begin(TurnMetrics.PHASE_CONTENT);
+            drawThumbnail(target,page,level);
+            metrics.end(TurnMetrics.PHASE_CONTENT);
+        }
+        target.restore();
+        lodSource.set(0,0,lodFrame.getWidth(),lodFrame.getHeight());
+        lodDest.set(0,0,getWidth(),getHeight());
+        canvas.drawBitmap(lodFrame,lodSource,lodDest,null);
+    }
+
+    /**
+     * 把一页的缩略图铺满整个View，还没有生成时只画背景色
+     */
+    private void drawThumbnail(Canvas canvas,int page,int level){
+        Bitmap thumbnail = thumbnailCache.get(page,level);
+        if (thumbnail == null){
+            canvas.drawColor(paintA.getColor());
+            return;
+        }
+        thumbnailSource.set(0,0,thumbnail.getWidth(),thumbnail.getHeight());
+        thumbnailDest.set(0,0,getWidth(),getHeight());
+        canvas.drawBitmap(thumbnail,thumbnailSource,thumbnailDest,thumbnailPaint);
+    }
+
+    /**
+     * 把翻页的跟踪记录写到文件，只在debug版本中有记录
+     */
+    public void dumpTrace(File file) throws IOException {
+        TurnTrace.dump(file);
+    }
+
+    /**
+     * 在左上角逐行绘制各个阶段的p50/p95/p99/max，单位为毫秒
+     */
+    private void drawMetricsHud(Canvas canvas){
+        metrics.snapshot(hudSnapshot);
+        float lineHeight = hudPaint.getTextSize() * 1.2f;
+        float y = lineHeight;
+        for (int phase = 0; phase < TurnMetrics.PHASE_COUNT; phase++) {
+            hudText.setLength(0);
+            hudText.append(TurnMetrics.Snapshot.phaseName(phase))
+                    .append(' ').append(hudSnapshot.p50[phase] / 1000f)
+                    .append('/').append(hudSnapshot.p95[phase] / 1000f)
+                    .append('/').append(hudSnapshot.p99[phase] / 1000f)
+                    .append('/').append(hudSnapshot.max[phase] / 1000f);
+            canvas.drawText(hudText,0,hudText.length(),0,y,hudPaint);
+            y += lineHeight;
         }
+        hudText.setLength(0);
+        hudText.append("jank ").append(metrics.jankFrameCount()).append('/').append(metrics.frameCount());
+        canvas.drawText(hudText,0,hudText.length(),0,y,hudPaint);
+    }
 
-        //在画布上导入已经有了的bitmap图片，null表示没有画笔
-        canvas.drawBitmap(bitmap,0,0,null);
+    /**
+     * 获取某一页的栅格，计入内容阶段的耗时。
+     * 书还没有排版到这一页附近并且后台的索引任务还没有结束时（比如刚打开就跳到很远的页），
+     * 不在UI线程从已知的位置一直排版到这一页，先返回占位的页，等排版线程或者索引任务赶上之后重画
+     */
+    private PageHolder obtainPage(int page){
+        if (!canLayoutNow(page)){
+            removeCallbacks(placeholderRetry);
+            postDelayed(placeholderRetry,PLACEHOLDER_RETRY_MILLIS);
+            return placeholderPage;
+        }
+        metrics.begin(TurnMetrics.PHASE_CONTENT);
+        PageHolder holder = pageRasterCache.get(page);
+        metrics.end(TurnMetrics.PHASE_CONTENT);
+        return holder;
+    }
 
+    /**
+     * 这一页是否可以在UI线程马上准备：不是书的页，离已经排好的页不超过MAX_SYNC_LAYOUT_PAGES，或者索引任务已经结束。
+     * 只读取Paginator的volatile字段，排版线程正在排版时也不会等待
+     */
+    private boolean canLayoutNow(int page){
+        Paginator paginator = this.paginator;
+        if (pageProvider != bookPageProvider || paginator == null){
+            return true;
+        }
+        if (page - paginator.laidOutPages() < MAX_SYNC_LAYOUT_PAGES){
+            return true;
+        }
+        return pageIndexTask == null || pageIndexTask.isDone();
+    }
 
+    /**
+     * 画一页的内容，记录模式下回放Picture，受canvas当前的裁剪和矩阵影响
+     */
+    private void drawPage(Canvas canvas,PageHolder page){
+        if (page.picture != null){
+            canvas.drawPicture(page.picture);
+        }else {
+            canvas.drawBitmap(page.bitmap,0,0,null);
+        }
     }
 
     private void drawPathAText(Canvas canvas,Path path,Paint paint){
-        Bitmap bitmap = Bitmap.createBitmap(getWidth(),getHeight(), Bitmap.Config.RGB_565);
-        Canvas canvasBitmapA = new Canvas(bitmap);
-        canvasBitmapA.drawPath(path,paint);
-        canvasBitmapA.drawText("脆皮鸭啊啊啊啊啊",getWidth() - 260,getHeight() - 100,textPaint);
+        PageHolder page = obtainPage(currentPage);
+        metrics.begin(TurnMetrics.PHASE_CLIP);
         //调用canvas.save()来保存画布当前的状态，当操作之后取出之前保存过的状态，这样就不会对其他的元素进行影响
         canvas.save();
         //对绘制内容进行剪裁，取和A区域的交集
         canvas.clipPath(path,Region.Op.INTERSECT);
-        canvas.drawBitmap(bitmap,0,0,null);
+        canvas.drawPath(path,paint);
+        drawPage(canvas,page);
         canvas.restore();
+        metrics.end(TurnMetrics.PHASE_CLIP);
     }
 
     private void drawPathBText(Canvas canvas,Path pathA,Paint paint){
-        Bitmap bitmap = Bitmap.createBitmap(getWidth(),getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvasBitmapB = new Canvas(bitmap);
-        canvasBitmapB.drawPath(drawB(),paint);
-        canvasBitmapB.drawText("脆皮鸭啊啊啊啊啊",getWidth() - 260,getHeight() - 100,textPaint);
-        canvas.save();
-        //裁剪出A区域
-        canvas.clipPath(pathA);
-        //裁剪出A和C区域的全集
-        canvas.clipPath(drawC(),Region.Op.UNION);
-        //裁剪出B区域中不同于与AC区域的部分
-        canvas.clipPath(pathB,Region.Op.REVERSE_DIFFERENCE);
-        canvas.drawBitmap(bitmap,0,0,null);
-//        canvas.restore();
-//        canvas.save();
-        drawBShadow(canvas);
-        canvas.restore();
-    }
-
-    private void drawBShadow(Canvas canvas) {
-        //深色端的颜色
-        int deepColor = 0xff111111;
-        //浅色端的颜色
-        int lightColor = 0x00111111;
-        int[] gradientColors = new int[]{deepColor,lightColor};
-
-        //a到f的距离
-        float aAndFLength = (float) Math.hypot((a.x - f.x),(a.y - f.y));
-        //对角线的长度
-        float diagonalLength = (float) Math.hypot(getWidth(),getHeight());
-
-        Log.d(TAG,"aaAndFLength:"+aAndFLength);
-        Log.d(TAG,"aaAndFLength4:"+aAndFLength/4);
-
-        //确定阴影矩形的坐标
-        int left;
-        int right;
-        int top = (int) c.y;
-        int bottom = (int) (c.y + diagonalLength);
-
-        //生成GradientDrawable对象
-        GradientDrawable gradientDrawable;
-
-        //f点在右上角，从左到右渐变
-        if (f.y == 0){
-            gradientDrawable = new GradientDrawable(GradientDrawable.Orientation.LEFT_RIGHT,gradientColors);
-            //线性渐变
-            gradientDrawable.setGradientType(GradientDrawable.LINEAR_GRADIENT);
-            left = (int) c.x;
-            right = (int) (c.x + aAndFLength/4);
+        PageHolder page = obtainPage(currentPage + 1);
+        metrics.begin(TurnMetrics.PHASE_CLIP);
+        //B区域在A区域以外，不会超出翻起部分的包围盒
+        curl.curlBounds(curlBounds);
+        regionBoundsF.set(curlBounds[0],curlBounds[1],curlBounds[2],curlBounds[3]);
+        Canvas region = beginRegion(regionBoundsF);
+        if (region == null){
+            metrics.end(TurnMetrics.PHASE_CLIP);
+            return;
+        }
+        //去掉A、C区域
+        region.clipPath(pathA,Region.Op.DIFFERENCE);
+        region.clipPath(pathC,Region.Op.DIFFERENCE);
+        region.drawColor(paint.getColor());
+        if (page.picture != null){
+            //回放时裁剪之外的命令会被跳过
+            region.drawPicture(page.picture);
         }else {
-            //f点在右下角，从右到左渐变
-            gradientDrawable = new GradientDrawable(GradientDrawable.Orientation.RIGHT_LEFT,gradientColors);
-            //线性渐变
-            gradientDrawable.setGradientType(GradientDrawable.LINEAR_GRADIENT);
-            left = (int) (c.x - aAndFLength/4);
-            right = (int) c.x ;
+            region.drawBitmap(page.bitmap,regionBounds,regionBounds,null);
         }
-        gradientDrawable.setBounds(left,top,right,bottom);
-        //旋转角度
-        float rotateDegress = (float) Math.toDegrees(Math.atan2(e.x - f.x,h.y - f.y));
-        Log.d(TAG,"rotate:"+rotateDegress);
-        //以c为中心点旋转
-        canvas.rotate(rotateDegress,c.x,c.y);
-        gradientDrawable.draw(canvas);
+        metrics.end(TurnMetrics.PHASE_CLIP);
+        metrics.begin(TurnMetrics.PHASE_SHADOW);
+        curlShadow.drawB(region,curl);
+        metrics.end(TurnMetrics.PHASE_SHADOW);
+        endRegion(canvas);
     }
 
-
     private void drawPathCText(Canvas canvas,Path pathA,Paint paint){
-        Bitmap bitmap = Bitmap.createBitmap(getWidth(),getHeight(), Bitmap.Config.RGB_565);
-        Canvas canvasBitmapC = new Canvas(bitmap);
-        canvasBitmapC.drawPath(drawB(),paint);
-        canvasBitmapC.drawText("脆皮鸭啊啊啊啊啊",getWidth() - 260,getHeight() - 100,textPaint);
-
-        canvas.save();
-        canvas.clipPath(pathA);
-        //裁剪出C区域不同于A区域的部分
-        canvas.clipPath(drawC(),Region.Op.REVERSE_DIFFERENCE);
-        float ef = (float) Math.hypot(f.x - e.x,h.y - f.y);
-        float sina = (f.x - e.x) / ef;
-        float cosa = (h.y - f.y) / ef;
-        float tana = sina / cosa;
-        float a = (float) Math.atan(tana);
-        Log.d(TAG,"sina:"+sina);
-        Log.d(TAG,"cosa:"+cosa);
-        Log.d(TAG,"aaa:" + 2 * Math.toDegrees(a));
-        Matrix matrix = new Matrix();
-        matrix.reset();
-//        //使用post，越靠前越先执行。
-//        matrix.postScale(-1,1);
-//        matrix.postRotate(- 2 * a);
-//        matrix.postTranslate(-e.x,-e.y);
-//        matrix.postTranslate(e.x,e.y);
-
-        float[] matrixValue = { 0, 0, 0, 0, 0 ,0, 0, 0, 1.0f };
-        matrixValue[0] = -(1 - 2 * sina * sina);
-        matrixValue[1] = 2 * sina * cosa;
-        matrixValue[3] = 2 * sina * cosa;
-        matrixValue[4] = 1 - 2 * sina * sina;
-        Log.d(TAG,"pingfang"+(matrixValue[3] * matrixValue[3] + matrixValue[4] * matrixValue[4]));
-        Log.d(TAG,"va0:" + matrixValue[0] + "   va1:" + matrixValue[1] + "   va3:" + matrixValue[3] + "   va4:" + matrixValue[4]);
-//        Matrix matrix = new Matrix();
-//        matrix.reset();
-        matrix.setValues(matrixValue);
-        Log.d(TAG,"matrix:"+matrix.toString());
-        matrix.preTranslate(-e.x,-e.y);
-        Log.d(TAG,"matrix1:"+matrix.toString());
-        matrix.postTranslate(e.x,e.y);
-        Log.d(TAG,"matrix2:"+matrix.toString());
-        Log.d(TAG,"matrix,e.x:"+e.x);
-        Log.d(TAG,"matrix,e.y:"+e.y);
-
-        canvas.drawBitmap(bitmap,matrix,null);
-//        canvas.restore();
-//        canvas.save();
-        drawCShadow(canvas);
-        canvas.restore();
+        PageHolder page = obtainPage(currentPage);
+        metrics.begin(TurnMetrics.PHASE_CLIP);
+        pathC.computeBounds(regionBoundsF,true);
+        Canvas region = beginRegion(regionBoundsF);
+        if (region == null){
+            metrics.end(TurnMetrics.PHASE_CLIP);
+            return;
+        }
+        //裁剪出C区域不同于A区域的部分，pathC在onDraw中已经构建好
+        region.clipPath(pathC);
+        region.clipPath(pathA,Region.Op.DIFFERENCE);
+        region.drawColor(paint.getColor());
+        metrics.end(TurnMetrics.PHASE_CLIP);
+        metrics.begin(TurnMetrics.PHASE_REFLECTION);
+        //背面是当前页的镜像，区域缓冲已经平移到包围盒的左上角，镜像矩阵接在平移之后
+        region.save();
+        region.concat(updateReflectionMatrix());
+        drawPage(region,page);
+        region.restore();
+        metrics.end(TurnMetrics.PHASE_REFLECTION);
+        metrics.begin(TurnMetrics.PHASE_SHADOW);
+        curlShadow.drawC(region,curl);
+        metrics.end(TurnMetrics.PHASE_SHADOW);
+        endRegion(canvas);
     }
 
-    private void drawCShadow(Canvas canvas) {
-        //深色端的颜色
-        int deepColor = 0xff111111;
-        //浅色端的颜色
-        int lightColor = 0x00333333;
-        int[] gradientColors = new int[]{lightColor,deepColor};
-
-        //深色端的偏移值
-        int deepOffset = 1;
-        //浅色端的偏移值
-        int lightOffset = -30;
-
-//        //a到f的距离
-//        float aAndFLength = (float) Math.hypot((a.x - f.x),(a.y - f.y));
-        //对角线的长度
-        float diagonalLength = (float) Math.hypot(getWidth(),getHeight());
-
-        int midpoint_ce = (int) (c.x + e.x) / 2;//ce中点
-        int midpoint_jh = (int) (j.y + h.y) / 2;//jh中点
-        //中点到控制点的最小值
-        float minDisToControlPoint = Math.min(Math.abs(midpoint_ce - e.x), Math.abs(midpoint_jh - h.y));
-
-        //确定阴影矩形的坐标
-        int left;
-        int right;
-        int top = (int) c.y;
-        //绘制C阴影时，c.y + diagonalLength
-        int bottom = (int) (c.y + diagonalLength);
-
-        //生成GradientDrawable对象
-        GradientDrawable gradientDrawable;
-
-        //f点在右上角，从左到右渐变
-        if (f.y == 0){
-            gradientDrawable = new GradientDrawable(GradientDrawable.Orientation.LEFT_RIGHT,gradientColors);
-            //线性渐变
-            gradientDrawable.setGradientType(GradientDrawable.LINEAR_GRADIENT);
-
-            //借助偏移量让矩形右移
-            left = (int) c.x - lightOffset;
-            right = (int) (c.x + minDisToControlPoint + deepOffset);
-
-            Log.d(TAG,"c.xaa:"+c.x);
-            Log.d(TAG,"left:"+left);
-            Log.d(TAG,"right:"+right);
-        }else {
-            //f点在右下角，从右到左渐变
-            gradientDrawable = new GradientDrawable(GradientDrawable.Orientation.RIGHT_LEFT,gradientColors);
-            //线性渐变
-            gradientDrawable.setGradientType(GradientDrawable.LINEAR_GRADIENT);
+    /**
+     * 在REGION缓冲区的左上角准备一块和bounds一样大的区域，返回已经平移好的Canvas，
+     * 之后按View的坐标绘制，只有这块区域会被填充。区域为空时返回null
+     */
+    private Canvas beginRegion(RectF bounds){
+        bounds.roundOut(regionBounds);
+        if (!regionBounds.intersect(frameClip)){
+            return null;
+        }
+        Canvas region = frameBufferPool.obtainCanvas(FrameBufferPool.REGION);
+        region.save();
+        region.clipRect(0,0,regionBounds.width(),regionBounds.height());
+        region.drawColor(Color.TRANSPARENT,PorterDuff.Mode.CLEAR);
+        region.translate(-regionBounds.left,-regionBounds.top);
+        //再裁剪一次，之后的绘制坐标都是View的坐标
+        region.clipRect(regionBounds);
+        return region;
+    }
 
-            //借助偏移量让矩形左移
-            left = (int) (c.x - minDisToControlPoint - deepOffset);
-            right = (int) (c.x + lightOffset);
+    /**
+     * 把beginRegion准备的区域合成到整帧上
+     */
+    private void endRegion(Canvas canvas){
+        frameBufferPool.obtainCanvas(FrameBufferPool.REGION).restore();
+        regionSource.set(0,0,regionBounds.width(),regionBounds.height());
+        canvas.drawBitmap(frameBufferPool.getBitmap(FrameBufferPool.REGION),regionSource,regionBounds,null);
+    }
 
-            Log.d(TAG,"c.xaa:"+c.x);
-            Log.d(TAG,"left:"+left);
-            Log.d(TAG,"right:"+right);
+    /**
+     * 从curl中更新背面C的镜像矩阵
+     */
+    private Matrix updateReflectionMatrix(){
+        float[] matrixValue = curl.reflection();
+        if (TurnTrace.ENABLED){
+            TurnTrace.record(TurnTrace.REFLECTION,curl.sin(),curl.cos());
+            TurnTrace.record(TurnTrace.REFLECTION_MATRIX,matrixValue[0],matrixValue[1]);
+            TurnTrace.record(TurnTrace.REFLECTION_CENTER,curl.x(E),curl.y(E));
         }
-        gradientDrawable.setBounds(left,top,right,bottom);
-        //旋转角度
-        float rotateDegress = (float) Math.toDegrees(Math.atan2(e.x - f.x,h.y - f.y));
-        Log.d(TAG,"rotate:"+rotateDegress);
-        //以c为中心点旋转
-        canvas.rotate(rotateDegress,c.x,c.y);
-        gradientDrawable.draw(canvas);
+        //镜像矩阵已经包含了以e为中心的平移
+        reflectionMatrix.setValues(matrixValue);
+        return reflectionMatrix;
     }
 
     private Path drawA(){
@@ -601,39 +1815,20 @@ public class PageTurnView extends View{
 
     private Path drawARightTop(){
         pathA.reset();
-        pathA.moveTo(0,0);
-        pathA.lineTo(c.x,c.y);
-        pathA.quadTo(e.x,e.y,b.x,b.y);
-        pathA.lineTo(a.x,a.y);
-        pathA.lineTo(k.x,k.y);
-        pathA.quadTo(h.x,h.y,j.x,j.y);
-        pathA.lineTo(getWidth(),getHeight());
-        pathA.lineTo(0,getHeight());
-        pathA.close();
+        curl.buildRegionARightTop(pathA,getWidth(),getHeight());
         return pathA;
     }
 
     private Path drawARightBottom() {
         pathA.reset();
-        pathA.moveTo(0,0);
-        pathA.lineTo(0,getHeight());
-        pathA.lineTo(c.x,c.y);
-        pathA.quadTo(e.x,e.y,b.x,b.y);
-        pathA.lineTo(a.x,a.y);
-        pathA.lineTo(k.x,k.y);
-        pathA.quadTo(h.x,h.y,j.x,j.y);
-        pathA.lineTo(getWidth(),0);
-        pathA.close();
+        curl.buildRegionARightBottom(pathA,getWidth(),getHeight());
         return pathA;
     }
 
     private Path drawC() {
 
         pathC.reset();
-        pathC.moveTo(d.x,d.y);
-        pathC.lineTo(i.x,i.y);
-        pathC.lineTo(a.x,a.y);
-        pathC.lineTo(d.x,d.y);
+        curl.buildRegionC(pathC);
         return pathC;
     }
 
@@ -648,111 +1843,284 @@ public class PageTurnView extends View{
     }
 
     /**
-     * 计算临界的a点的坐标
+     * 软件绘制，B、C区域先画到和它们的包围盒一样大的离屏区域，再贴到帧缓冲上，
+     * 裁剪和填充只涉及包围盒以内的像素，不再是整个View
      */
-    private void caclCrisisA(){
-        float w0 = getWidth() - c.x;
+    private class SoftwareRenderer implements CurlRenderer {
 
-        float w1 = Math.abs(f.x - a.x);
-        float w2 = getWidth() * w1 / w0;
-        a.x = Math.abs(f.x - w2);
+        @Override
+        public boolean usesFrameBuffer() {
+            return true;
+        }
+
+        @Override
+        public void drawRest(Canvas canvas) {
+            drawPathAText(canvas,drawA(),paintA);
+        }
 
-        float h1 = Math.abs(f.y - a.y);
-        float h2 = w2 * h1 / w1;
-        a.y = Math.abs(f.y - h2);
+        @Override
+        public void drawCurl(Canvas canvas, Path pathA, Path pathC) {
+            //画A区域
+            drawPathAText(canvas,pathA,paintA);
+            //画C区域
+            drawPathCText(canvas,pathA,paint);
+            //画B区域
+            drawPathBText(canvas,pathA,paintB);
+        }
     }
 
     /**
-     *计算c.x的正负
+     * 硬件加速绘制，直接画在View的Canvas上
+     * 只使用INTERSECT和DIFFERENCE裁剪：C为C区域去掉A区域，B为整个View去掉A、C区域，
+     * 区域的背景用drawColor填充，先用包围盒clipRect限定填充的范围
      */
-    private float caclCX(float x,float y,PointF f){
-        PointF c = new PointF(0,0);
-        g.x = (x + f.x) / 2 ;
-        g.y = (y + f.y) / 2;
+    private class HardwareRenderer implements CurlRenderer {
+
+        @Override
+        public boolean usesFrameBuffer() {
+            return false;
+        }
 
-        e.x = g.x - (f.y - g.y) * (f.y - g.y) / (f.x - g.x);
-        e.y = f.y;
+        @Override
+        public void drawRest(Canvas canvas) {
+            PageHolder page = obtainPage(currentPage);
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            canvas.drawColor(paintA.getColor());
+            drawPage(canvas,page);
+            metrics.end(TurnMetrics.PHASE_CLIP);
+        }
+
+        @Override
+        public void drawCurl(Canvas canvas, Path pathA, Path pathC) {
+            //画A区域
+            PageHolder page = obtainPage(currentPage);
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            canvas.save();
+            canvas.clipPath(pathA);
+            canvas.drawColor(paintA.getColor());
+            drawPage(canvas,page);
+            canvas.restore();
+
+            //画C区域，先用矩形限定到包围盒，路径裁剪和填充只涉及这一块
+            canvas.save();
+            pathC.computeBounds(regionBoundsF,true);
+            canvas.clipRect(regionBoundsF);
+            canvas.clipPath(pathC);
+            clipOut(canvas,pathA);
+            canvas.drawColor(paint.getColor());
+            metrics.end(TurnMetrics.PHASE_CLIP);
+            metrics.begin(TurnMetrics.PHASE_REFLECTION);
+            canvas.save();
+            canvas.concat(updateReflectionMatrix());
+            drawPage(canvas,page);
+            canvas.restore();
+            metrics.end(TurnMetrics.PHASE_REFLECTION);
+            metrics.begin(TurnMetrics.PHASE_SHADOW);
+            curlShadow.drawC(canvas,curl);
+            metrics.end(TurnMetrics.PHASE_SHADOW);
+            canvas.restore();
+
+            //画B区域
+            PageHolder nextPage = obtainPage(currentPage + 1);
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            canvas.save();
+            curl.curlBounds(curlBounds);
+            canvas.clipRect(curlBounds[0],curlBounds[1],curlBounds[2],curlBounds[3]);
+            clipOut(canvas,pathA);
+            clipOut(canvas,pathC);
+            canvas.drawColor(paintB.getColor());
+            drawPage(canvas,nextPage);
+            metrics.end(TurnMetrics.PHASE_CLIP);
+            metrics.begin(TurnMetrics.PHASE_SHADOW);
+            curlShadow.drawB(canvas,curl);
+            metrics.end(TurnMetrics.PHASE_SHADOW);
+            canvas.restore();
+        }
 
-        c.x = e.x - (f.x - e.x) / 2;
-        c.y = f.y;
-        return c.x;
+        /**
+         * 去掉某个区域，API 26以上clipPath(Path, Region.Op)已经废弃
+         */
+        private void clipOut(Canvas canvas,Path path){
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O){
+                canvas.clipOutPath(path);
+            }else {
+                canvas.clipPath(path,Region.Op.DIFFERENCE);
+            }
+        }
     }
 
     /**
-     * 计算各个点的坐标
+     * 网格绘制，下一页铺满整个View，当前页不卷曲的部分直接贴图，
+     * 卷曲的部分用drawBitmapMesh画在圆柱上，背面就是当前页的镜像，不再需要C区域的裁剪和镜像矩阵
+     * 硬件加速下drawBitmapMesh的colors需要API 18以上，低版本只是没有明暗
      */
-    private void caclData() {
+    private class MeshRenderer implements CurlRenderer {
 
-        g.x = (a.x + f.x) / 2 ;
-        g.y = (a.y + f.y) / 2;
+        @Override
+        public boolean usesFrameBuffer() {
+            return false;
+        }
 
-        e.x = g.x - (f.y - g.y) * (f.y - g.y) / (f.x - g.x);
-        e.y = f.y;
+        @Override
+        public void drawRest(Canvas canvas) {
+            hardwareRenderer.drawRest(canvas);
+        }
 
-        h.x = f.x;
-        h.y = g.y - (f.x - g.x) * (f.x - g.x) / (f.y - g.y);
+        @Override
+        public void drawCurl(Canvas canvas, Path pathA, Path pathC) {
+            Bitmap texture = obtainMeshTexture();
+            metrics.begin(TurnMetrics.PHASE_GEOMETRY);
+            curlMesh.update(curl,getWidth(),getHeight());
+            meshFlatPath.reset();
+            curlMesh.buildFlatRegion(meshFlatPath,(float) Math.hypot(getWidth(),getHeight()) * 2);
+            metrics.end(TurnMetrics.PHASE_GEOMETRY);
+
+            //画B区域，会被当前页盖住的部分也一起画，省去裁剪
+            PageHolder nextPage = obtainPage(currentPage + 1);
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            canvas.drawColor(paintB.getColor());
+            drawPage(canvas,nextPage);
+            metrics.end(TurnMetrics.PHASE_CLIP);
+            metrics.begin(TurnMetrics.PHASE_SHADOW);
+            canvas.save();
+            curlShadow.drawB(canvas,curl);
+            canvas.restore();
+            metrics.end(TurnMetrics.PHASE_SHADOW);
+
+            //当前页不卷曲的部分
+            metrics.begin(TurnMetrics.PHASE_CLIP);
+            canvas.save();
+            canvas.clipPath(meshFlatPath);
+            canvas.drawBitmap(texture,0,0,null);
+            canvas.restore();
+            metrics.end(TurnMetrics.PHASE_CLIP);
+
+            //卷曲的部分，不卷曲的顶点都投影在卷曲起点的直线上，三角形面积为0
+            metrics.begin(TurnMetrics.PHASE_REFLECTION);
+            canvas.drawBitmapMesh(texture,curlMesh.columns(),curlMesh.rows(),curlMesh.verts(),0,curlMesh.colors(),0,null);
+            metrics.end(TurnMetrics.PHASE_REFLECTION);
+        }
 
-        c.x = e.x - (f.x - e.x) / 2;
-        c.y = f.y;
+        /**
+         * 网格的贴图需要不透明的整页，当前页变化时才重新合成背景和文字
+         */
+        private Bitmap obtainMeshTexture(){
+            Canvas textureCanvas = frameBufferPool.obtainCanvas(FrameBufferPool.MESH_TEXTURE);
+            if (meshTexturePage != currentPage){
+                PageHolder page = obtainPage(currentPage);
+                metrics.begin(TurnMetrics.PHASE_CONTENT);
+                textureCanvas.drawColor(paintA.getColor());
+                drawPage(textureCanvas,page);
+                metrics.end(TurnMetrics.PHASE_CONTENT);
+                //占位的页换成排好的页时重新合成
+                meshTexturePage = page != placeholderPage ? currentPage : -1;
+            }
+            return frameBufferPool.getBitmap(FrameBufferPool.MESH_TEXTURE);
+        }
+    }
 
-        j.x = f.x;
-        j.y = h.y - (f.y - h.y) / 2;
+    /**
+     * 显示书的PageProvider，排版线程取出文字排版，栅格化线程用holder自己的画笔绘制，
+     * 没有设置书时每一页都显示默认的文字
+     */
+    private class BookPageProvider extends PageProvider {
 
-        b = obtainPoint(a.x,a.y,e.x,e.y,c.x,c.y,j.x,j.y);
-        k = obtainPoint(a.x,a.y,h.x,h.y,c.x,c.y,j.x,j.y);
+        @Override
+        public int getPageCount() {
+            Paginator paginator = PageTurnView.this.paginator;
+            return paginator != null ? paginator.pageCount() : -1;
+        }
+
+        @Override
+        public PageHolder onCreatePageHolder() {
+            return new BookPageHolder();
+        }
 
-        d.x = ((b.x + c.x)/2 + e.x)/2;
-        d.y = ((b.y + c.y)/2 + e.y)/2;
+        /**
+         * 只画文字，可以记录成Picture
+         */
+        @Override
+        public boolean isRecordable() {
+            return true;
+        }
 
-        i.x = ((k.x + j.x)/2 + h.x)/2;
-        i.y = ((k.y + j.y)/2 + h.y)/2;
+        @Override
+        public void onPreparePage(PageHolder holder, int page) {
+            BookPageHolder bookHolder = (BookPageHolder) holder;
+            bookHolder.paint.set(pageTextPaint);
+            bookHolder.textPage = null;
+            Paginator paginator = PageTurnView.this.paginator;
+            if (paginator == null){
+                return;
+            }
+            try {
+                bookHolder.textPage = paginator.page(page);
+            } catch (IOException e) {
+                Log.e(TAG,"failed to paginate page " + page,e);
+            }
+        }
+
+        @Override
+        public void onBindPage(PageHolder holder, int page) {
+            BookPageHolder bookHolder = (BookPageHolder) holder;
+            Canvas canvas = holder.getCanvas();
+            Paint textPaint = bookHolder.paint;
+            TextPage textPage = bookHolder.textPage;
+            //画完之后不再需要文字
+            bookHolder.textPage = null;
+            if (textPage == null){
+                if (book == null){
+                    canvas.drawText("脆皮鸭啊啊啊啊啊",holder.getWidth() - 260,holder.getHeight() - 100,textPaint);
+                }
+                return;
+            }
+            float lineHeight = textPaint.getFontSpacing();
+            //drawText的y是基线
+            float y = PAGE_MARGIN - textPaint.ascent();
+            for (int line = 0; line < textPage.lineCount; line++) {
+                int start = textPage.lineStart(line);
+                canvas.drawText(textPage.text,start,textPage.lineEnd(line) - start,PAGE_MARGIN,y,textPaint);
+                y += lineHeight;
+            }
+        }
+    }
 
+    /**
+     * 每个holder有自己的画笔，UI线程和栅格化线程不会共用
+     */
+    private static class BookPageHolder extends PageHolder {
 
-//        Log.d(TAG,"a.x:"+a.x);
-//        Log.d(TAG,"a.y:"+a.y);
-//        Log.d(TAG,"f.x:"+f.x);
-//        Log.d(TAG,"g.x:"+g.x);
-//        Log.d(TAG,"e.x:"+e.x);
-//        Log.d(TAG,"e.y:"+e.y);
-//        Log.d(TAG,"h.x:"+h.x);
-//        Log.d(TAG,"h.y:"+h.y);
-//        Log.d(TAG,"c.x:"+c.x);
-//        Log.d(TAG,"c.y:"+c.y);
-//        Log.d(TAG,"j.x:"+j.x);
-//        Log.d(TAG,"j.y:"+j.y);
-//        Log.d(TAG,"d.x:"+d.x);
-//        Log.d(TAG,"d.y:"+d.y);
-//        Log.d(TAG,"i.x:"+i.x);
-//        Log.d(TAG,"i.y:"+i.y);
-//        Log.d(TAG,"b.x:"+b.x);
-//        Log.d(TAG,"b.y:"+b.y);
-//        Log.d(TAG,"k.x:"+k.x);
-//        Log.d(TAG,"k.y:"+k.y);
+        final Paint paint = new Paint();
 
+        TextPage textPage;
     }
 
-    PointF obtainPoint(float x1,float y1,float x2,float y2,float x3,float y3,float x4,float y4){
-        PointF pointF = new PointF(0,0);
-        float x = 0;
-        float y = 0;
-        float k1 = 0;
-        float k2 = 0;
-        float b1 = 0;
-        float b2 = 0;
+    /**
+     * 用Paint断行
+     */
+    private static class TextPaintMeasurer implements TextMeasurer {
 
-        k1 = (y1 - y2)/(x1 - x2);
-        k2 = (y3 - y4)/(x3 - x4);
+        private final Paint paint;
 
-        b1 = (y1 * x2 - y2 * x1)/(x2 - x1);
-        b2 = (y3 * x4 - y4 * x3)/(x4 - x3);
+        TextPaintMeasurer(Paint paint) {
+            this.paint = paint;
+        }
 
-        x = (b2 - b1)/(k1 - k2);
-        y = k1 * x + b1;
+        @Override
+        public int breakText(char[] text, int start, int end, float maxWidth) {
+            return paint.breakText(text,start,end - start,maxWidth,null);
+        }
 
-        pointF.x = x;
-        pointF.y = y;
+        @Override
+        public float lineHeight() {
+            return paint.getFontSpacing();
+        }
+    }
 
-        return pointF;
+    /**
+     * Path已经有moveTo、lineTo、quadTo、close，直接作为CurlGeometry的PathSink使用
+     */
+    private static class CurlPath extends Path implements CurlGeometry.PathSink {
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,320 @@
+package com.example.gaope.pageturning;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 流式分页，不依赖Android
+ * 只按需要从BookText中读取文字，翻到第n页时只排版到第n页为止，
+ * 打开一本书显示第一页的开销和书的大小无关。已经排过的页只记住起始位置，
+ * 最近的几页保留完整的TextPage，往回翻到没有保留的页时从该页的起始位置重新打开BookText。
+ * 页面的位置由BookText决定，可能是字符下标也可能是字节偏移
+ * 排版的方法都是同步的，PageRasterCache的后台线程和UI线程可以同时使用；pageCount、laidOutPages和close不等待正在进行的排版
+ */
+
+class Paginator implements Closeable {
+
+    /**
+     * 缓冲区的初始大小，一页放不下时会扩大
+     */
+    private static final int INITIAL_BUFFER = 8192;
+
+    /**
+     * 保留完整TextPage的页数
+     */
+    private static final int CACHED_PAGES = 8;
+
+    private final BookText book;
+
+    private final TextMeasurer measurer;
+
+    private final float lineWidth;
+
+    private final int linesPerPage;
+
+    private final Map<Integer,TextPage> pages;
+
+    private BookReader reader;
+
+    private char[] buffer;
+
+    /**
+     * buffer[0]是打开reader之后读出的第几个字符
+     */
+    private int bufferOffset;
+
+    private int bufferLength;
+
+    private boolean endOfText;
+
+    /**
+     * 已知的每一页的起始位置，pageStarts[0]为0
+     */
+    private int[] pageStarts;
+
+    private volatile int knownStarts;
+
+    /**
+     * 下一次排版的页，缓冲区从这一页的起始位置开始
+     */
+    private int cursorPage;
+
+    /**
+     * cursorPage的起始位置是打开reader之后读出的第几个字符
+     */
+    private int cursorChars;
+
+    /**
+     * 总页数，读到结尾之前为-1
+     */
+    private volatile int pageCount;
+
+    /**
+     * close之后设置，正在page中排版的线程在下一页之前放弃，关闭时不用等它排版到目标页
+     */
+    private volatile boolean closed;
+
+    /**
+     * layoutLine的结果：行尾和下一行的起始位置，都是缓冲区中的下标
+     */
+    private int lineEnd;
+
+    private int nextLine;
+
+    Paginator(BookText book,TextMeasurer measurer,float lineWidth,int linesPerPage) {
+        if (linesPerPage < 1){
+            throw new IllegalArgumentException("page must hold at least one line");
+        }
+        this.book = book;
+        this.measurer = measurer;
+        this.lineWidth = lineWidth;
+        this.linesPerPage = linesPerPage;
+        pages = new LinkedHashMap<Integer,TextPage>(CACHED_PAGES * 2,0.75f,true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TextPage> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        buffer = new char[INITIAL_BUFFER];
+        pageStarts = new int[64];
+        knownStarts = 1;
+        pageCount = -1;
+    }
+
+    /**
+     * 获取某一页，超出书的范围或者已经关闭时返回null
+     */
+    synchronized TextPage page(int index) throws IOException {
+        if (closed || index < 0 || pageCount >= 0 && index >= pageCount){
+            return null;
+        }
+        TextPage page = pages.get(index);
+        if (page != null){
+            return page;
+        }
+        //从离目标最近的已知起始位置开始排版
+        int target = Math.min(index,knownStarts - 1);
+        if (reader == null || target != cursorPage){
+            seek(target);
+        }
+        while (!closed && (page = layoutNext()) != null){
+            if (page.index == index){
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 总页数，没有排版到结尾时为-1。不加锁，别的线程正在排版时也马上返回
+     */
+    int pageCount(){
+        return pageCount;
+    }
+
+    /**
+     * 已经排过的页数，不加锁
+     */
+    int laidOutPages(){
+        int pageCount = this.pageCount;
+        return pageCount >= 0 ? pageCount : knownStarts - 1;
+    }
+
+    /**
+     * 导入相同排版条件下保存的页面起始位置，之后可以直接跳到其中任意一页
+     */
+    synchronized void restore(PageIndex index){
+        if (index.count > knownStarts){
+            pageStarts = Arrays.copyOf(index.starts,Math.max(index.count,pageStarts.length));
+            knownStarts = index.count;
+        }
+        if (index.complete && index.count == knownStarts){
+            pageCount = knownStarts - 1;
+        }
+    }
+
+    /**
+     * 当前已知的页面起始位置
+     */
+    synchronized PageIndex index(){
+        return new PageIndex(Arrays.copyOf(pageStarts,knownStarts),knownStarts,pageCount >= 0);
+    }
+
+    /**
+     * 从最后一个已知的位置一直排版到结尾，线程被中断时抛出InterruptedIOException
+     */
+    synchronized PageIndex layoutAll() throws IOException {
+        if (pageCount < 0){
+            seek(knownStarts - 1);
+            while (layoutNext() != null){
+                if (Thread.currentThread().isInterrupted()){
+                    throw new InterruptedIOException("layout cancelled at page " + cursorPage);
+                }
+            }
+        }
+        return index();
+    }
+
+    /**
+     * 关闭之后不再排版，别的线程正在page中排版时在下一页之前放弃
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this){
+            closeReader();
+        }
+    }
+
+    private void closeReader() throws IOException {
+        if (reader != null){
+            reader.close();
+            reader = null;
+        }
+    }
+
+    /**
+     * 从某一页的起始位置重新打开BookText
+     */
+    private void seek(int page) throws IOException {
+        closeReader();
+        reader = book.open(pageStarts[page]);
+        bufferOffset = 0;
+        bufferLength = 0;
+        endOfText = false;
+        cursorPage = page;
+        cursorChars = 0;
+    }
+
+    /**
+     * 排版cursorPage，到结尾时返回null
+     */
+    private TextPage layoutNext() throws IOException {
+        int start = pageStarts[cursorPage];
+        compact(cursorChars);
+        int[] lineStarts = new int[linesPerPage];
+        int[] lineEnds = new int[linesPerPage];
+        int lineCount = 0;
+        int position = 0;
+        while (lineCount < linesPerPage && available(position)){
+            layoutLine(position);
+            lineStarts[lineCount] = position;
+            lineEnds[lineCount] = lineEnd;
+            lineCount++;
+            position = nextLine;
+        }
+        if (lineCount == 0){
+            pageCount = cursorPage;
+            return null;
+        }
+
+        int end;
+        if (cursorPage + 1 < knownStarts){
+            end = pageStarts[cursorPage + 1];
+        }else {
+            end = reader.position(cursorChars + position);
+            if (knownStarts == pageStarts.length){
+                pageStarts = Arrays.copyOf(pageStarts,knownStarts * 2);
+            }
+            pageStarts[knownStarts++] = end;
+        }
+        TextPage page = new TextPage(cursorPage,start,end,Arrays.copyOf(buffer,position),lineStarts,lineEnds,lineCount);
+        pages.put(cursorPage,page);
+        cursorPage++;
+        cursorChars += position;
+        return page;
+    }
+
+    /**
+     * 从缓冲区下标position开始排一行，结果写到lineEnd和nextLine
+     */
+    private void layoutLine(int position) throws IOException {
+        while (true){
+            int newline = -1;
+            for (int i = position; i < bufferLength; i++) {
+                if (buffer[i] == '\n'){
+                    newline = i;
+                    break;
+                }
+            }
+            int limit = newline >= 0 ? newline : bufferLength;
+            int count = measurer.breakText(buffer,position,limit,lineWidth);
+            //剩下的字符全部放得下时，段落可能还没有读完
+            if (count < limit - position || newline >= 0 || endOfText){
+                if (count == 0 && limit > position){
+                    //一个字符都放不下时也放一个，避免死循环
+                    count = 1;
+                }
+                if (count > 1 && count < limit - position && Character.isHighSurrogate(buffer[position + count - 1])){
+                    //不要把代理对拆到两行
+                    count--;
+                }
+                lineEnd = position + count;
+                nextLine = lineEnd == newline ? newline + 1 : lineEnd;
+                if (lineEnd > position && buffer[lineEnd - 1] == '\r'){
+                    lineEnd--;
+                }
+                return;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * 缓冲区中下标position处是否有字符，没有时继续读取
+     */
+    private boolean available(int position) throws IOException {
+        while (position >= bufferLength && !endOfText){
+            fill();
+        }
+        return position < bufferLength;
+    }
+
+    private void fill() throws IOException {
+        if (bufferLength == buffer.length){
+            buffer = Arrays.copyOf(buffer,buffer.length * 2);
+        }
+        int n = reader.read(buffer,bufferLength,buffer.length - bufferLength);
+        if (n < 0){
+            endOfText = true;
+        }else {
+            bufferLength += n;
+        }
+    }
+
+    /**
+     * 丢掉打开reader之后第chars个字符之前的字符，让buffer[0]对应它
+     */
+    private void compact(int chars){
+        int discard = chars - bufferOffset;
+        if (discard > 0){
+            System.arraycopy(buffer,discard,buffer,0,bufferLength - discard);
+            bufferLength -= discard;
+            bufferOffset = chars;
+        }
+    }
+}
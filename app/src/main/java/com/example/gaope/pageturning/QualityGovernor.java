@@ -0,0 +1,106 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 根据最近的帧耗时决定翻页过程中是否降级绘制，不依赖Android
+ * 全质量和降级的帧耗时分别做指数滑动平均：全质量的平均耗时超过预算的四分之三时降级，
+ * 降级后按像素数估算全质量的耗时，低于预算的一半时恢复，两个阈值之间留出余量避免来回切换。
+ * 流畅的设备不会降级，慢的设备在几帧之后就不再掉帧
+ */
+
+class QualityGovernor {
+
+    /**
+     * 一帧的预算，单位为纳秒
+     */
+    static final long BUDGET_NANOS = LatencyHistogram.FRAME_BUDGET_MICROS * 1000;
+
+    /**
+     * 全质量的平均耗时超过这个值时降级
+     */
+    static final long DEGRADE_NANOS = BUDGET_NANOS * 3 / 4;
+
+    /**
+     * 估算的全质量耗时低于这个值时恢复
+     */
+    static final long RECOVER_NANOS = BUDGET_NANOS / 2;
+
+    /**
+     * 降级时长宽都减半，像素数是全质量的四分之一
+     */
+    static final int DEGRADED_COST_RATIO = 4;
+
+    /**
+     * 至少记录这么多帧之后才会切换
+     */
+    static final int WARMUP_FRAMES = 4;
+
+    /**
+     * 滑动平均中新的一帧占1/8
+     */
+    private static final int SMOOTHING_SHIFT = 3;
+
+    private long fullAverage;
+
+    private int fullFrames;
+
+    private long degradedAverage;
+
+    private int degradedFrames;
+
+    private boolean degraded;
+
+    /**
+     * 接下来翻页过程中的帧是否应该降级绘制
+     */
+    boolean isDegraded(){
+        return degraded;
+    }
+
+    /**
+     * 记录翻页过程中一帧的耗时，停在当前页时的帧不要记录
+     */
+    void record(long nanos,boolean degradedFrame){
+        if (degradedFrame){
+            degradedAverage = accumulate(degradedAverage,degradedFrames,nanos);
+            degradedFrames++;
+            long estimate = degradedAverage * DEGRADED_COST_RATIO;
+            if (degraded && degradedFrames >= WARMUP_FRAMES && estimate < RECOVER_NANOS){
+                degraded = false;
+                //以估算值作为全质量的起点，恢复后仍然很慢时很快会再次降级
+                fullAverage = estimate;
+                fullFrames = WARMUP_FRAMES;
+            }
+        }else {
+            fullAverage = accumulate(fullAverage,fullFrames,nanos);
+            fullFrames++;
+            if (!degraded && fullFrames >= WARMUP_FRAMES && fullAverage > DEGRADE_NANOS){
+                degraded = true;
+                degradedFrames = 0;
+            }
+        }
+    }
+
+    /**
+     * 回到初始状态，重新从全质量开始
+     */
+    void reset(){
+        fullAverage = 0;
+        fullFrames = 0;
+        degradedAverage = 0;
+        degradedFrames = 0;
+        degraded = false;
+    }
+
+    /**
+     * 预热期间取最小值，第一帧的栅格化这类偶发的耗时不会影响判断，之后做滑动平均
+     */
+    private static long accumulate(long average,int frames,long nanos){
+        if (frames == 0){
+            return nanos;
+        }
+        if (frames < WARMUP_FRAMES){
+            return Math.min(average,nanos);
+        }
+        return average + ((nanos - average) >> SMOOTHING_SHIFT);
+    }
+}
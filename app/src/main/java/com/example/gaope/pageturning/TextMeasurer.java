@@ -0,0 +1,18 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 分页时的文字测量，PageTurnView用textPaint实现，不依赖Android的Paginator通过它断行
+ */
+
+interface TextMeasurer {
+
+    /**
+     * text中从start到end之间，从start开始一行最多能放下的字符数
+     */
+    int breakText(char[] text,int start,int end,float maxWidth);
+
+    /**
+     * 行高
+     */
+    float lineHeight();
+}
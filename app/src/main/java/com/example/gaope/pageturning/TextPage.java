@@ -0,0 +1,50 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 分页的结果，一页在书中的位置范围和每一行的起止位置
+ * text只包含这一页的字符，行的位置相对于text
+ */
+
+class TextPage {
+
+    /**
+     * 页码，从0开始
+     */
+    final int index;
+
+    /**
+     * 这一页在书中的位置范围，不包含end，位置的含义由BookText决定
+     */
+    final int start;
+
+    final int end;
+
+    final char[] text;
+
+    final int lineCount;
+
+    private final int[] lineStarts;
+
+    private final int[] lineEnds;
+
+    TextPage(int index,int start,int end,char[] text,int[] lineStarts,int[] lineEnds,int lineCount) {
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.text = text;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.lineCount = lineCount;
+    }
+
+    int lineStart(int line){
+        return lineStarts[line];
+    }
+
+    /**
+     * 行尾，不包含换行符
+     */
+    int lineEnd(int line){
+        return lineEnds[line];
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 根据最近的触摸采样估计手指的速度，并预测稍后的位置，不依赖Android
+ * MotionEvent中的历史采样和当前采样都放进环形缓冲区，只用最近WINDOW_MILLIS以内的采样
+ * 对时间做最小二乘直线拟合，斜率就是速度，单个采样的抖动不会让速度跳变。
+ * 预测的距离有上限，手指突然停下时不会把折痕甩出去太远
+ */
+
+class TouchPredictor {
+
+    /**
+     * 最多保留的采样数
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * 参与速度估计的时间窗口
+     */
+    static final long WINDOW_MILLIS = 50;
+
+    /**
+     * 最多预测的时间
+     */
+    static final int MAX_PREDICTION_MILLIS = 32;
+
+    /**
+     * 预测点离最新采样的最大距离
+     */
+    static final float MAX_PREDICTION_DISTANCE = 64;
+
+    private final long[] times = new long[CAPACITY];
+
+    private final float[] xs = new float[CAPACITY];
+
+    private final float[] ys = new float[CAPACITY];
+
+    /**
+     * 最新一个采样的下标和采样总数
+     */
+    private int head = -1;
+
+    private int size;
+
+    private float velocityX;
+
+    private float velocityY;
+
+    private boolean velocityValid;
+
+    /**
+     * 添加一个采样，时间单位为毫秒，必须按时间顺序添加
+     */
+    void addSample(long timeMillis,float x,float y){
+        head = (head + 1) % CAPACITY;
+        times[head] = timeMillis;
+        xs[head] = x;
+        ys[head] = y;
+        if (size < CAPACITY){
+            size++;
+        }
+        velocityValid = false;
+    }
+
+    /**
+     * 清空采样，新的手势开始时调用
+     */
+    void reset(){
+        head = -1;
+        size = 0;
+        velocityX = 0;
+        velocityY = 0;
+        velocityValid = true;
+    }
+
+    int sampleCount(){
+        return size;
+    }
+
+    /**
+     * x方向的速度，单位为像素每毫秒
+     */
+    float velocityX(){
+        computeVelocity();
+        return velocityX;
+    }
+
+    /**
+     * y方向的速度，单位为像素每毫秒
+     */
+    float velocityY(){
+        computeVelocity();
+        return velocityY;
+    }
+
+    /**
+     * 预测最新采样之后aheadMillis毫秒的位置，结果写到out[0]、out[1]，没有采样时不修改out
+     */
+    void predict(int aheadMillis,float[] out){
+        if (size == 0){
+            return;
+        }
+        float x = xs[head];
+        float y = ys[head];
+        int ahead = Math.max(0,Math.min(aheadMillis,MAX_PREDICTION_MILLIS));
+        float dx = velocityX() * ahead;
+        float dy = velocityY() * ahead;
+        float distance = (float) Math.hypot(dx,dy);
+        if (distance > MAX_PREDICTION_DISTANCE){
+            dx = dx * MAX_PREDICTION_DISTANCE / distance;
+            dy = dy * MAX_PREDICTION_DISTANCE / distance;
+        }
+        out[0] = x + dx;
+        out[1] = y + dy;
+    }
+
+    /**
+     * 对窗口内的采样做最小二乘拟合，时间以最新采样为原点，避免大数相减丢失精度
+     */
+    private void computeVelocity(){
+        if (velocityValid){
+            return;
+        }
+        velocityValid = true;
+        velocityX = 0;
+        velocityY = 0;
+        if (size < 2){
+            return;
+        }
+        long newest = times[head];
+        int n = 0;
+        float sumT = 0;
+        float sumX = 0;
+        float sumY = 0;
+        float sumTT = 0;
+        float sumTX = 0;
+        float sumTY = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (head - i + CAPACITY) % CAPACITY;
+            float t = times[index] - newest;
+            if (-t > WINDOW_MILLIS){
+                break;
+            }
+            float x = xs[index];
+            float y = ys[index];
+            n++;
+            sumT += t;
+            sumX += x;
+            sumY += y;
+            sumTT += t * t;
+            sumTX += t * x;
+            sumTY += t * y;
+        }
+        float denominator = n * sumTT - sumT * sumT;
+        if (n < 2 || denominator == 0){
+            return;
+        }
+        velocityX = (n * sumTX - sumT * sumX) / denominator;
+        velocityY = (n * sumTY - sumT * sumY) / denominator;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 翻页每一帧各个阶段的耗时统计
+ * PageTurnView在onDraw和松手动画的帧回调中按阶段计时，宿主可以通过快照轮询，
+ * 也可以注册监听在每一帧结束时读取，整个过程不分配对象
+ */
+
+public class TurnMetrics {
+
+    /**
+     * 几何计算和区域Path的构建
+     */
+    public static final int PHASE_GEOMETRY = 0;
+
+    /**
+     * 获取页面内容的栅格，缓存未命中时包含文字绘制
+     */
+    public static final int PHASE_CONTENT = 1;
+
+    /**
+     * 裁剪和区域的填充
+     */
+    public static final int PHASE_CLIP = 2;
+
+    /**
+     * 背面C的镜像贴图
+     */
+    public static final int PHASE_REFLECTION = 3;
+
+    /**
+     * B、C的阴影
+     */
+    public static final int PHASE_SHADOW = 4;
+
+    /**
+     * 整个onDraw
+     */
+    public static final int PHASE_FRAME = 5;
+
+    /**
+     * 松手动画的一帧
+     */
+    public static final int PHASE_SCROLL = 6;
+
+    /**
+     * 从触摸事件发生到反映这次触摸的一帧绘制完成
+     */
+    public static final int PHASE_INPUT = 7;
+
+    public static final int PHASE_COUNT = 8;
+
+    static final String[] PHASE_NAMES = {
+            "geometry","content","clip","reflection","shadow","frame","scroll","input"
+    };
+
+    /**
+     * 每一帧结束时回调
+     */
+    public interface OnFrameMetricsListener {
+        void onFrameMetrics(TurnMetrics metrics);
+    }
+
+    /**
+     * 某一时刻的统计结果，由调用方创建后反复使用，单位为微秒
+     */
+    public static class Snapshot {
+        public final long[] p50 = new long[PHASE_COUNT];
+        public final long[] p95 = new long[PHASE_COUNT];
+        public final long[] p99 = new long[PHASE_COUNT];
+        public final long[] max = new long[PHASE_COUNT];
+        public final long[] count = new long[PHASE_COUNT];
+
+        /**
+         * 每个阶段超过16ms的次数
+         */
+        public final long[] overBudget = new long[PHASE_COUNT];
+
+        public static String phaseName(int phase){
+            return PHASE_NAMES[phase];
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASE_COUNT];
+
+    private final long[] phaseStart = new long[PHASE_COUNT];
+
+    /**
+     * 当前帧中每个阶段累计的耗时，一帧中同一个阶段可能执行多次
+     */
+    private final long[] frameNanos = new long[PHASE_COUNT];
+
+    private final boolean[] frameTouched = new boolean[PHASE_COUNT];
+
+    TurnMetrics() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void begin(int phase){
+        phaseStart[phase] = System.nanoTime();
+    }
+
+    /**
+     * 结束某个阶段的计时，累计到当前帧，在endFrame时统一记录
+     */
+    void end(int phase){
+        frameNanos[phase] += System.nanoTime() - phaseStart[phase];
+        frameTouched[phase] = true;
+    }
+
+    void beginFrame(){
+        begin(PHASE_FRAME);
+    }
+
+    /**
+     * 结束一帧，把这一帧中执行过的阶段记录到直方图
+     */
+    void endFrame(){
+        end(PHASE_FRAME);
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            if (i != PHASE_SCROLL && frameTouched[i]){
+                histograms[i].record(frameNanos[i]);
+                frameNanos[i] = 0;
+                frameTouched[i] = false;
+            }
+        }
+    }
+
+    /**
+     * 松手动画的帧回调不在onDraw中，每次单独记录
+     */
+    void endScroll(){
+        histograms[PHASE_SCROLL].record(System.nanoTime() - phaseStart[PHASE_SCROLL]);
+    }
+
+    /**
+     * 输入延迟也不在onDraw的阶段中，每次单独记录
+     */
+    void recordInputLatency(long nanos){
+        histograms[PHASE_INPUT].record(nanos);
+    }
+
+    public long frameCount(){
+        return histograms[PHASE_FRAME].count();
+    }
+
+    /**
+     * 超过16ms的帧数
+     */
+    public long jankFrameCount(){
+        return histograms[PHASE_FRAME].overBudget();
+    }
+
+    public void snapshot(Snapshot out){
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            LatencyHistogram histogram = histograms[i];
+            out.p50[i] = histogram.percentileMicros(50);
+            out.p95[i] = histogram.percentileMicros(95);
+            out.p99[i] = histogram.percentileMicros(99);
+            out.max[i] = histogram.maxMicros();
+            out.count[i] = histogram.count();
+            out.overBudget[i] = histogram.overBudget();
+        }
+    }
+
+    public void reset(){
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            histograms[i].reset();
+            frameNanos[i] = 0;
+            frameTouched[i] = false;
+        }
+    }
+}
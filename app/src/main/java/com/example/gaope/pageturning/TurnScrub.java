@@ -0,0 +1,214 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 快速翻阅的进度，不依赖Android
+ * 位置以页为单位，整数部分是当前页，小数部分是当前页翻过去了多少。拖动时手指移动的距离按step换算成目标页，
+ * 位置以和离目标的距离成正比的速度追赶目标，限制在MIN_RATE到MAX_RATE页每秒之间，远的时候快，近的时候慢。
+ * 连续RAPID_TURNS次翻页，每次和上一次相隔不超过RAPID_TURN_NANOS时进入快速翻阅；
+ * 松手之后停在最近的整页上，再等RAPID_TURN_NANOS没有新的拖动才结束，期间按下可以接着翻
+ */
+
+class TurnScrub {
+
+    /**
+     * 连续翻这么多页时进入快速翻阅
+     */
+    static final int RAPID_TURNS = 3;
+
+    /**
+     * 两次翻页之间不超过这么久算作连续，松手之后也等这么久才结束，单位为纳秒
+     */
+    static final long RAPID_TURN_NANOS = 400 * 1000000L;
+
+    /**
+     * 追赶目标的速度，单位为页每秒
+     */
+    static final float MIN_RATE = 6f;
+
+    static final float MAX_RATE = 60f;
+
+    /**
+     * 离目标一页时的速度是GAIN页每秒
+     */
+    static final float GAIN = 12f;
+
+    private int rapidTurns;
+
+    private long lastTurnNanos;
+
+    private boolean active;
+
+    private boolean dragging;
+
+    private float position;
+
+    private float target;
+
+    /**
+     * 页数的上限，不确定时为-1
+     */
+    private int pageCount = -1;
+
+    private float dragOrigin;
+
+    private float dragOriginTarget;
+
+    private float step;
+
+    private long releaseNanos;
+
+    private long lastFrameNanos;
+
+    private float rate;
+
+    /**
+     * 一次松手完成了翻页时调用，连续翻页的次数达到RAPID_TURNS时返回true
+     */
+    boolean onTurnCompleted(long nanos){
+        if (rapidTurns > 0 && nanos - lastTurnNanos <= RAPID_TURN_NANOS){
+            rapidTurns++;
+        }else {
+            rapidTurns = 1;
+        }
+        lastTurnNanos = nanos;
+        return rapidTurns >= RAPID_TURNS;
+    }
+
+    /**
+     * 从position开始快速翻阅，小数部分是正在翻的页已经翻过去的比例，pageCount不确定时传入-1
+     */
+    void start(float position,int pageCount,long nanos){
+        this.pageCount = pageCount;
+        this.position = position;
+        target = position;
+        active = true;
+        dragging = false;
+        releaseNanos = nanos;
+        lastFrameNanos = nanos;
+        rate = 0;
+        rapidTurns = 0;
+    }
+
+    /**
+     * 页数变化时更新上限
+     */
+    void setPageCount(int pageCount){
+        this.pageCount = pageCount;
+        target = clamp(target);
+    }
+
+    /**
+     * 目标从所在的页向后移动pages页
+     */
+    void turn(int pages){
+        target = clamp((float) Math.floor(target) + pages);
+    }
+
+    /**
+     * 开始拖动，coordinate每增加step，目标向后一页
+     */
+    void beginDrag(float coordinate,float step){
+        dragging = true;
+        dragOrigin = coordinate;
+        dragOriginTarget = target;
+        this.step = step;
+    }
+
+    void drag(float coordinate){
+        if (dragging){
+            target = clamp(dragOriginTarget + (coordinate - dragOrigin) / step);
+        }
+    }
+
+    /**
+     * 松手，目标停在最近的整页上
+     */
+    void endDrag(long nanos){
+        dragging = false;
+        target = clamp(Math.round(target));
+        releaseNanos = nanos;
+    }
+
+    /**
+     * 把位置推进到frameNanos，结束时返回false，位置就是目标所在的整页
+     */
+    boolean update(long frameNanos){
+        if (!active){
+            return false;
+        }
+        float elapsed = Math.max(0,frameNanos - lastFrameNanos) / 1e9f;
+        lastFrameNanos = frameNanos;
+        float distance = target - position;
+        float speed = Math.max(MIN_RATE,Math.min(Math.abs(distance) * GAIN,MAX_RATE));
+        float move = Math.min(Math.abs(distance),speed * elapsed);
+        if (move == Math.abs(distance)){
+            position = target;
+        }else {
+            position += distance > 0 ? move : -move;
+        }
+        rate = elapsed > 0 ? move / elapsed : 0;
+        if (!dragging && position == target && frameNanos - releaseNanos >= RAPID_TURN_NANOS){
+            active = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 立即结束，停在最近的整页上
+     */
+    void cancel(){
+        position = Math.round(position);
+        target = position;
+        active = false;
+        dragging = false;
+    }
+
+    boolean isActive(){
+        return active;
+    }
+
+    boolean isDragging(){
+        return dragging;
+    }
+
+    /**
+     * 当前页，位置的整数部分
+     */
+    int page(){
+        return (int) Math.floor(position);
+    }
+
+    /**
+     * 当前页翻过去的比例
+     */
+    float fraction(){
+        return position - (float) Math.floor(position);
+    }
+
+    /**
+     * 松手之后要停下的页
+     */
+    int targetPage(){
+        return Math.round(target);
+    }
+
+    /**
+     * 是否在往回翻
+     */
+    boolean isBackward(){
+        return target < position;
+    }
+
+    /**
+     * 最近一帧的速度，单位为页每秒
+     */
+    float rate(){
+        return rate;
+    }
+
+    private float clamp(float page){
+        float last = pageCount >= 0 ? Math.max(0,pageCount - 1) : Float.MAX_VALUE;
+        return Math.max(0,Math.min(page,last));
+    }
+}
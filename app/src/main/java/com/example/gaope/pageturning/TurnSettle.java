@@ -0,0 +1,160 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 松手后a点的弹簧动画，不依赖Android
+ * 使用临界阻尼弹簧的解析解，位置只取决于从松手开始经过的时间，
+ * 不论屏幕是60Hz还是90/120Hz，也不论中间掉了几帧，同一时刻的位置都相同。
+ * 松手时的速度作为弹簧的初速度，快速甩动时翻页更快，
+ * 离目标和速度都足够小时直接停在目标上，不会无限地逼近
+ */
+
+class TurnSettle {
+
+    /**
+     * 弹簧的刚度，临界阻尼下大约400ms从屏幕一侧到另一侧
+     */
+    static final float DEFAULT_STIFFNESS = 600f;
+
+    /**
+     * 离目标小于这个距离，并且速度小于REST_VELOCITY时停止，单位为像素
+     */
+    static final float REST_DISTANCE = 0.5f;
+
+    /**
+     * 单位为像素每秒
+     */
+    static final float REST_VELOCITY = 10f;
+
+    /**
+     * 固有角频率，sqrt(stiffness)
+     */
+    private final float omega;
+
+    private float startX;
+
+    private float startY;
+
+    private float velocityX;
+
+    private float velocityY;
+
+    private float targetX;
+
+    private float targetY;
+
+    private float x;
+
+    private float y;
+
+    private boolean running;
+
+    TurnSettle() {
+        this(DEFAULT_STIFFNESS);
+    }
+
+    TurnSettle(float stiffness) {
+        if (stiffness <= 0){
+            throw new IllegalArgumentException("stiffness must be positive");
+        }
+        omega = (float) Math.sqrt(stiffness);
+    }
+
+    /**
+     * 松手时决定是翻过去还是回到原处
+     * 甩动的速度超过minFlingVelocity时按方向决定，向左翻过去，向右回到原处；
+     * 否则a点过了View的一半就翻过去
+     *
+     * @param velocityX 单位为像素每秒
+     */
+    static boolean shouldComplete(float ax,float width,float velocityX,float minFlingVelocity){
+        if (Math.abs(velocityX) >= minFlingVelocity){
+            return velocityX < 0;
+        }
+        return ax < width / 2;
+    }
+
+    /**
+     * 从(x,y)以速度(velocityX,velocityY)开始向目标运动，速度单位为像素每秒
+     */
+    void start(float x,float y,float velocityX,float velocityY,float targetX,float targetY){
+        startX = x;
+        startY = y;
+        this.velocityX = limitVelocity(velocityX,x - targetX);
+        this.velocityY = limitVelocity(velocityY,y - targetY);
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.x = x;
+        this.y = y;
+        running = true;
+    }
+
+    /**
+     * 计算开始之后elapsedNanos时的位置，已经停止时返回false，位置就是目标
+     */
+    boolean update(long elapsedNanos){
+        if (!running){
+            return false;
+        }
+        float t = Math.max(0,elapsedNanos) / 1e9f;
+        float decay = (float) Math.exp(-omega * t);
+        //每个方向上：x(t) = target + (d0 + (v0 + ω·d0)·t)·e^(-ωt)，v(t) = (v0 - ω·(v0 + ω·d0)·t)·e^(-ωt)
+        float dx0 = startX - targetX;
+        float dy0 = startY - targetY;
+        float bx = velocityX + omega * dx0;
+        float by = velocityY + omega * dy0;
+        float dx = (dx0 + bx * t) * decay;
+        float dy = (dy0 + by * t) * decay;
+        float vx = (velocityX - omega * bx * t) * decay;
+        float vy = (velocityY - omega * by * t) * decay;
+        if (Math.abs(dx) < REST_DISTANCE && Math.abs(dy) < REST_DISTANCE
+                && Math.abs(vx) < REST_VELOCITY && Math.abs(vy) < REST_VELOCITY){
+            x = targetX;
+            y = targetY;
+            running = false;
+            return false;
+        }
+        x = targetX + dx;
+        y = targetY + dy;
+        return true;
+    }
+
+    /**
+     * 朝向目标的速度超过ω·d0时弹簧会越过目标再回来，a点越过f点时几何没有意义，所以限制在不越过的范围
+     */
+    private float limitVelocity(float velocity,float distance){
+        if (distance > 0){
+            return Math.max(velocity,-omega * distance);
+        }
+        if (distance < 0){
+            return Math.min(velocity,-omega * distance);
+        }
+        return 0;
+    }
+
+    /**
+     * 停止动画，位置停在最后一次update的结果
+     */
+    void cancel(){
+        running = false;
+    }
+
+    boolean isRunning(){
+        return running;
+    }
+
+    float x(){
+        return x;
+    }
+
+    float y(){
+        return y;
+    }
+
+    float targetX(){
+        return targetX;
+    }
+
+    float targetY(){
+        return targetY;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.gaope.pageturning;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * 翻页热路径上的跟踪记录，代替每一帧拼接字符串的Log.d
+ * ENABLED是编译期常量，release版本中所有 if (TurnTrace.ENABLED) 包裹的调用都会被编译器去掉；
+ * debug版本中只把时间戳和原始数值写入预先分配的环形缓冲区，需要时再dump到文件
+ */
+
+final class TurnTrace {
+
+    /**
+     * 是否开启跟踪，由build.gradle中的buildConfigField决定
+     */
+    static final boolean ENABLED = BuildConfig.TURN_TRACE;
+
+    /**
+     * 触摸点，v0、v1为x、y
+     */
+    static final int TOUCH = 0;
+
+    /**
+     * 横向翻页时修正后的a点，v0、v1为x、y
+     */
+    static final int ORIENTATION = 1;
+
+    /**
+     * ACTION_MOVE，v0、v1为a点的x、y
+     */
+    static final int MOVE = 2;
+
+    /**
+     * 松手动画中的a点，v0、v1为x、y
+     */
+    static final int SCROLL = 3;
+
+    /**
+     * 松手动画结束，v0、v1为a点的x、y
+     */
+    static final int SCROLL_END = 4;
+
+    /**
+     * 背面镜像的角度，v0、v1为sin、cos
+     */
+    static final int REFLECTION = 5;
+
+    /**
+     * 背面镜像矩阵，v0、v1为第0、1个值
+     */
+    static final int REFLECTION_MATRIX = 6;
+
+    /**
+     * 背面镜像的中心点e，v0、v1为x、y
+     */
+    static final int REFLECTION_CENTER = 7;
+
+    /**
+     * B阴影，v0为a到f的距离，v1为旋转角度
+     */
+    static final int B_SHADOW = 8;
+
+    /**
+     * C阴影的矩形，v0、v1为left、right
+     */
+    static final int C_SHADOW = 9;
+
+    /**
+     * C阴影的旋转，v0为c.x，v1为旋转角度
+     */
+    static final int C_SHADOW_ROTATE = 10;
+
+    private static final String[] NAMES = {
+            "touch","orientation","move","scroll","scrollEnd",
+            "reflection","reflectionMatrix","reflectionCenter",
+            "bShadow","cShadow","cShadowRotate"
+    };
+
+    /**
+     * 环形缓冲区的大小，必须是2的幂
+     */
+    private static final int CAPACITY = 4096;
+
+    private static final long[] times = new long[CAPACITY];
+
+    private static final int[] tags = new int[CAPACITY];
+
+    private static final float[] values0 = new float[CAPACITY];
+
+    private static final float[] values1 = new float[CAPACITY];
+
+    /**
+     * 一共记录过的条数，超过CAPACITY后覆盖最早的记录
+     */
+    private static long written;
+
+    private TurnTrace() {
+    }
+
+    /**
+     * 调用方需要用 if (TurnTrace.ENABLED) 包裹，这样release版本中参数也不会计算
+     */
+    static synchronized void record(int tag,float v0,float v1){
+        int index = (int) (written & (CAPACITY - 1));
+        times[index] = System.nanoTime();
+        tags[index] = tag;
+        values0[index] = v0;
+        values1[index] = v1;
+        written++;
+    }
+
+    /**
+     * 把缓冲区中的记录按时间顺序写到文件，每行为：纳秒时间戳 名称 v0 v1
+     */
+    static synchronized void dump(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            long start = Math.max(0,written - CAPACITY);
+            for (long i = start; i < written; i++) {
+                int index = (int) (i & (CAPACITY - 1));
+                writer.print(times[index]);
+                writer.print(' ');
+                writer.print(NAMES[tags[index]]);
+                writer.print(' ');
+                writer.print(values0[index]);
+                writer.print(' ');
+                writer.println(values1[index]);
+            }
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()){
+            throw new IOException("failed to write trace to " + file);
+        }
+    }
+
+    static synchronized void clear(){
+        written = 0;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * BitmapBudget按优先级释放和拒绝的本地单元测试，只涉及字节数，不分配bitmap
+ */
+public class BitmapBudgetTest {
+
+    /**
+     * 每个优先级持有一些字节，被要求释放时整块交出
+     */
+    private static class FakeConsumer implements BitmapBudget.Consumer {
+
+        final BitmapBudget budget;
+        final long[] held = new long[3];
+        final StringBuilder trimmed = new StringBuilder();
+
+        FakeConsumer(BitmapBudget budget) {
+            this.budget = budget;
+        }
+
+        void hold(int priority,long bytes){
+            assertTrue(budget.reserve(bytes,priority));
+            held[priority] += bytes;
+        }
+
+        @Override
+        public long trim(int priority, long bytes) {
+            long released = held[priority];
+            if (released > 0){
+                trimmed.append(priority);
+                held[priority] = 0;
+                budget.unreserve(released);
+            }
+            return released;
+        }
+    }
+
+    @Test
+    public void prefetch_evictsCachedThenDenied() throws Exception {
+        BitmapBudget budget = new BitmapBudget(null,100);
+        FakeConsumer consumer = new FakeConsumer(budget);
+        budget.register(consumer);
+        consumer.hold(BitmapBudget.PRIORITY_CACHED,40);
+        consumer.hold(BitmapBudget.PRIORITY_PREFETCHED,40);
+
+        //放不下时先释放缓存
+        assertTrue(budget.reserve(50,BitmapBudget.PRIORITY_PREFETCHED));
+        assertEquals("0",consumer.trimmed.toString());
+        assertEquals(90,budget.getUsedBytes());
+
+        //预取的页不会挤掉别的预取的页
+        assertFalse(budget.reserve(20,BitmapBudget.PRIORITY_PREFETCHED));
+        assertEquals("0",consumer.trimmed.toString());
+        assertEquals(90,budget.getUsedBytes());
+    }
+
+    @Test
+    public void visible_evictsLowerPrioritiesAndAlwaysSucceeds() throws Exception {
+        BitmapBudget budget = new BitmapBudget(null,100);
+        FakeConsumer consumer = new FakeConsumer(budget);
+        budget.register(consumer);
+        consumer.hold(BitmapBudget.PRIORITY_CACHED,30);
+        consumer.hold(BitmapBudget.PRIORITY_PREFETCHED,30);
+        consumer.hold(BitmapBudget.PRIORITY_VISIBLE,30);
+
+        assertTrue(budget.reserve(60,BitmapBudget.PRIORITY_VISIBLE));
+        assertEquals("01",consumer.trimmed.toString());
+        assertEquals(90,budget.getUsedBytes());
+
+        //正在显示的不会被释放，超出预算也照常分配
+        assertTrue(budget.reserve(60,BitmapBudget.PRIORITY_VISIBLE));
+        assertEquals("01",consumer.trimmed.toString());
+        assertEquals(150,budget.getUsedBytes());
+    }
+
+    @Test
+    public void setMaxBytes_trimsDownToBudget() throws Exception {
+        BitmapBudget budget = new BitmapBudget(null,100);
+        FakeConsumer consumer = new FakeConsumer(budget);
+        budget.register(consumer);
+        consumer.hold(BitmapBudget.PRIORITY_CACHED,30);
+        consumer.hold(BitmapBudget.PRIORITY_PREFETCHED,30);
+        consumer.hold(BitmapBudget.PRIORITY_VISIBLE,30);
+
+        budget.setMaxBytes(70);
+        assertEquals("0",consumer.trimmed.toString());
+        budget.setMaxBytes(10);
+        assertEquals("01",consumer.trimmed.toString());
+        assertEquals(30,budget.getUsedBytes());
+
+        budget.unregister(consumer);
+        assertEquals(0,budget.trim(BitmapBudget.PRIORITY_VISIBLE,Long.MAX_VALUE));
+    }
+}
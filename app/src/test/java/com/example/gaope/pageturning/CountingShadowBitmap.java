@@ -0,0 +1,25 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计新分配的bitmap数，从BitmapPool复用的不算，回放时用来发现bitmap的反复分配。
+ * 排版和栅格化线程也会通过BitmapBudget分配，计数在测试线程读取
+ */
+@Implements(Bitmap.class)
+public class CountingShadowBitmap extends ShadowBitmap {
+
+    static final AtomicInteger created = new AtomicInteger();
+
+    @Implementation
+    public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+        created.incrementAndGet();
+        return ShadowBitmap.createBitmap(width,height,config);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.example.gaope.pageturning.CurlGeometry.A;
+import static com.example.gaope.pageturning.CurlGeometry.C;
+import static com.example.gaope.pageturning.CurlGeometry.E;
+import static com.example.gaope.pageturning.CurlGeometry.F;
+import static com.example.gaope.pageturning.CurlGeometry.H;
+import static com.example.gaope.pageturning.CurlGeometry.J;
+import static org.junit.Assert.*;
+
+/**
+ * CurlGeometry的本地单元测试
+ */
+public class CurlGeometryTest {
+
+    private static final float DELTA = 0.01f;
+
+    private static final int WIDTH = 1080;
+
+    private static final int HEIGHT = 1920;
+
+    private CurlGeometry curl;
+
+    @Before
+    public void setUp() throws Exception {
+        curl = new CurlGeometry();
+    }
+
+    @Test
+    public void controlPoints_areOnPageEdges() throws Exception {
+        curl.set(F,WIDTH,HEIGHT);
+        curl.set(A,700,1500);
+        curl.calculate();
+
+        assertEquals(HEIGHT,curl.y(E),DELTA);
+        assertEquals(HEIGHT,curl.y(C),DELTA);
+        assertEquals(WIDTH,curl.x(H),DELTA);
+        assertEquals(WIDTH,curl.x(J),DELTA);
+    }
+
+    @Test
+    public void reflection_mapsCornerOntoTouchPoint() throws Exception {
+        curl.set(F,WIDTH,0);
+        curl.set(A,800,300);
+        curl.calculate();
+
+        float[] m = curl.reflection();
+        float x = m[0] * curl.x(F) + m[1] * curl.y(F) + m[2];
+        float y = m[3] * curl.x(F) + m[4] * curl.y(F) + m[5];
+        assertEquals(curl.x(A),x,DELTA);
+        assertEquals(curl.y(A),y,DELTA);
+    }
+
+    @Test
+    public void reflection_keepsControlPointE() throws Exception {
+        curl.set(F,WIDTH,HEIGHT);
+        curl.set(A,500,1700);
+        curl.calculate();
+
+        float[] m = curl.reflection();
+        float x = m[0] * curl.x(E) + m[1] * curl.y(E) + m[2];
+        float y = m[3] * curl.x(E) + m[4] * curl.y(E) + m[5];
+        assertEquals(curl.x(E),x,DELTA);
+        assertEquals(curl.y(E),y,DELTA);
+        //镜像矩阵的行列式为-1
+        assertEquals(-1,m[0] * m[4] - m[1] * m[3],DELTA);
+    }
+
+    @Test
+    public void crisisA_bringsCBackToLeftEdge() throws Exception {
+        curl.set(F,WIDTH,HEIGHT);
+        curl.set(A,50,1000);
+        curl.calculate();
+        assertTrue(curl.calculateCX(50,1000) < 0);
+
+        curl.calculateCrisisA(WIDTH);
+        curl.calculate();
+        assertEquals(0,curl.x(C),1);
+    }
+
+    @Test
+    public void curlBounds_coverCornerAndFold() throws Exception {
+        curl.set(F,WIDTH,HEIGHT);
+        curl.set(A,900,1700);
+        curl.calculate();
+
+        float[] bounds = new float[4];
+        curl.curlBounds(bounds);
+        assertEquals(curl.x(C),bounds[0],DELTA);
+        assertEquals(curl.y(J),bounds[1],DELTA);
+        assertEquals(WIDTH,bounds[2],DELTA);
+        assertEquals(HEIGHT,bounds[3],DELTA);
+        //翻起的部分很小，只需要重画右下角
+        assertTrue((bounds[2] - bounds[0]) * (bounds[3] - bounds[1]) < WIDTH * HEIGHT / 4);
+    }
+
+    @Test
+    public void scrub_cMovesLeftMonotonically() throws Exception {
+        float previous = Float.MAX_VALUE;
+        for (int step = 0; step <= 100; step++) {
+            float fraction = step / 100f;
+            curl.calculateScrub(fraction,WIDTH,HEIGHT);
+            assertTrue("c.x=" + curl.x(C) + " at fraction " + fraction + " is not left of " + previous,curl.x(C) < previous);
+            previous = curl.x(C);
+        }
+        //翻完时背面正好盖住左半边
+        assertEquals(-WIDTH / 2f,curl.x(C),1f);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static com.example.gaope.pageturning.CurlGeometry.A;
+import static com.example.gaope.pageturning.CurlGeometry.C;
+import static com.example.gaope.pageturning.CurlGeometry.F;
+import static org.junit.Assert.*;
+
+/**
+ * CurlMesh的本地单元测试
+ */
+public class CurlMeshTest {
+
+    private static final int WIDTH = 1080;
+
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void corner_landsOnTouchPoint() throws Exception {
+        CurlGeometry curl = new CurlGeometry();
+        curl.set(F,WIDTH,HEIGHT);
+        curl.set(A,600,1500);
+        curl.calculate();
+
+        CurlMesh mesh = new CurlMesh(8,12);
+        mesh.update(curl,WIDTH,HEIGHT);
+
+        float[] verts = mesh.verts();
+        int corner = (mesh.rows() + 1) * (mesh.columns() + 1) - 1;
+        assertEquals(curl.x(A),verts[corner * 2],1f);
+        assertEquals(curl.y(A),verts[corner * 2 + 1],1f);
+    }
+
+    @Test
+    public void flatVertices_collapseOntoFoldLine() throws Exception {
+        CurlGeometry curl = new CurlGeometry();
+        curl.set(F,WIDTH,0);
+        curl.set(A,800,300);
+        curl.calculate();
+
+        CurlMesh mesh = new CurlMesh(8,12);
+        mesh.update(curl,WIDTH,HEIGHT);
+
+        //左下角离f最远，一定不卷曲，投影后和c的连线平行于cj
+        float[] verts = mesh.verts();
+        int bottomLeft = mesh.rows() * (mesh.columns() + 1);
+        float x = verts[bottomLeft * 2];
+        float y = verts[bottomLeft * 2 + 1];
+        float cross = (x - curl.x(C)) * (curl.y(CurlGeometry.J) - curl.y(C))
+                - (y - curl.y(C)) * (curl.x(CurlGeometry.J) - curl.x(C));
+        assertEquals(0,cross,1f);
+        assertEquals(0xffffffff,mesh.colors()[bottomLeft]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setDensity_rejectsEmptyMesh() throws Exception {
+        new CurlMesh(0,4);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.gaope.pageturning;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * GestureLog的本地单元测试
+ */
+public class GestureLogTest {
+
+    @Test
+    public void writeRead_roundTrip() throws Exception {
+        GestureLog log = GestureScripts.rightTop(1080,1920);
+        File file = File.createTempFile("gesture",".log");
+        try {
+            log.write(file);
+            //每个采样只占几个字节
+            assertTrue(file.length() < log.sampleCount() * 6 + 64);
+
+            GestureLog read = GestureLog.read(file);
+            assertEquals("rightTop",read.name());
+            assertEquals(log.eventCount(),read.eventCount());
+            assertEquals(log.sampleCount(),read.sampleCount());
+            assertEquals(MotionEvent.ACTION_DOWN,read.action(0));
+            assertEquals(MotionEvent.ACTION_UP,read.action(read.eventCount() - 1));
+            for (int event = 0; event < log.eventCount(); event++) {
+                assertEquals(log.action(event),read.action(event));
+                assertEquals(log.sampleStart(event),read.sampleStart(event));
+                assertEquals(log.sampleEnd(event),read.sampleEnd(event));
+            }
+            for (int i = 0; i < log.sampleCount(); i++) {
+                assertEquals(log.time(i) - log.time(0),read.time(i));
+                assertEquals(log.x(i),read.x(i),1f / 16);
+                assertEquals(log.y(i),read.y(i),1f / 16);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void pointerAction_keepsPointerIndex() throws Exception {
+        int pointerDown = MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        GestureLog log = new GestureLog("pointer");
+        log.beginEvent(MotionEvent.ACTION_DOWN);
+        log.addSample(0,100,100);
+        log.beginEvent(pointerDown);
+        log.addSample(8,200,200);
+        File file = File.createTempFile("gesture",".log");
+        try {
+            log.write(file);
+            GestureLog read = GestureLog.read(file);
+            assertEquals(pointerDown,read.action(1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addSample_beforeEvent() throws Exception {
+        new GestureLog("empty").addSample(0,0,0);
+    }
+}
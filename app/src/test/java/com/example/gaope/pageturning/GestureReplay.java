@@ -0,0 +1,115 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import org.robolectric.Robolectric;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 在Robolectric中把GestureLog回放到PageTurnView上
+ * 按16ms一帧推进Robolectric的时钟：先分发这一帧之前到达的事件，再执行postOnAnimation和Choreographer的回调，
+ * 最后draw一次。松手之后继续推进，直到停在某一页。
+ * 每一帧记录分发、回调和绘制的耗时，并统计UI线程分配的字节数和新分配的bitmap数
+ */
+final class GestureReplay {
+
+    static final long FRAME_MILLIS = 16;
+
+    /**
+     * 松手动画最多等待的帧数，超过时认为停不下来
+     */
+    private static final int MAX_SETTLE_FRAMES = 600;
+
+    /**
+     * 一次回放的结果
+     */
+    static class Result {
+        final String name;
+        final LatencyHistogram frames = new LatencyHistogram();
+        long allocatedBytes;
+        int bitmapsCreated;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        long allocatedBytesPerFrame(){
+            return frames.count() > 0 ? allocatedBytes / frames.count() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": frames=" + frames.count()
+                    + " p50=" + frames.percentileMicros(50) + "us"
+                    + " p95=" + frames.percentileMicros(95) + "us"
+                    + " max=" + frames.maxMicros() + "us"
+                    + " allocated=" + allocatedBytes + "B (" + allocatedBytesPerFrame() + "B/frame)"
+                    + " bitmaps=" + bitmapsCreated;
+        }
+    }
+
+    private GestureReplay() {
+    }
+
+    static Result replay(PageTurnView view,Canvas canvas,GestureLog log){
+        Result result = new Result(log.name());
+        if (log.sampleCount() == 0){
+            return result;
+        }
+        //记录中的时间从0开始，接到Robolectric当前的时钟上
+        long base = SystemClock.uptimeMillis() + FRAME_MILLIS - log.time(0);
+        long downTime = base + log.time(0);
+        long frameTime = downTime;
+        int event = 0;
+        int settleFrames = 0;
+
+        int bitmapsBefore = CountingShadowBitmap.created.get();
+        long allocatedBefore = allocatedBytes();
+        while (event < log.eventCount() || !view.isAtRest()){
+            if (event >= log.eventCount() && ++settleFrames > MAX_SETTLE_FRAMES){
+                throw new AssertionError(log.name() + " did not settle");
+            }
+            long start = System.nanoTime();
+            //这一帧之前到达的事件
+            while (event < log.eventCount() && base + log.time(log.sampleEnd(event) - 1) <= frameTime){
+                dispatch(view,log,event,base,downTime);
+                event++;
+            }
+            Robolectric.getForegroundThreadScheduler().advanceTo(frameTime);
+            view.draw(canvas);
+            result.frames.record(System.nanoTime() - start);
+            frameTime += FRAME_MILLIS;
+        }
+        result.allocatedBytes = allocatedBytes() - allocatedBefore;
+        result.bitmapsCreated = CountingShadowBitmap.created.get() - bitmapsBefore;
+        return result;
+    }
+
+    /**
+     * 分发一个事件，历史采样作为同一帧中的MOVE事件先分发
+     */
+    private static void dispatch(PageTurnView view,GestureLog log,int event,long base,long downTime){
+        int last = log.sampleEnd(event) - 1;
+        for (int i = log.sampleStart(event); i <= last; i++) {
+            int action = i == last ? log.action(event) : MotionEvent.ACTION_MOVE;
+            MotionEvent motionEvent = MotionEvent.obtain(downTime,base + log.time(i),action,log.x(i),log.y(i),0);
+            view.dispatchTouchEvent(motionEvent);
+            motionEvent.recycle();
+        }
+    }
+
+    /**
+     * 当前线程已经分配的字节数，JVM不支持时为0
+     */
+    private static long allocatedBytes(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean){
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
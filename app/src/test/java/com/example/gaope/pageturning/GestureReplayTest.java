@@ -0,0 +1,149 @@
+package com.example.gaope.pageturning;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在JVM上回放标准手势，检查分配的字节数和bitmap的分配是否超出gesture_budgets.properties中的预算
+ * 超出时测试失败，构建也会失败。每个手势先回放一次让缓冲区和页面栅格就位，第二次的结果才计入。
+ * 每个手势的统计写到gestureReplay.reportDir下的报告中；帧耗时取决于机器，只有设置了gestureReplay.enforceFrameTime才检查
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25, shadows = CountingShadowBitmap.class)
+public class GestureReplayTest {
+
+    private static final int WIDTH = 1080;
+
+    private static final int HEIGHT = 1920;
+
+    /**
+     * 没有通过gradle运行时报告写到模块的build目录下
+     */
+    private static final String DEFAULT_REPORT_DIR = "build/reports/gesture-replay";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PageTurnView view;
+
+    private Canvas canvas;
+
+    private Properties budgets;
+
+    @Before
+    public void setUp() throws Exception {
+        MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+        view = (PageTurnView) activity.findViewById(R.id.page_turn_view);
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH,View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT,View.MeasureSpec.EXACTLY));
+        view.layout(0,0,WIDTH,HEIGHT);
+        canvas = new Canvas(Bitmap.createBitmap(WIDTH,HEIGHT,Bitmap.Config.ARGB_8888));
+
+        budgets = new Properties();
+        InputStream in = getClass().getClassLoader().getResourceAsStream("gesture_budgets.properties");
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void rightTop() throws Exception {
+        replayWithinBudget(GestureScripts.rightTop(WIDTH,HEIGHT));
+    }
+
+    @Test
+    public void rightBottom() throws Exception {
+        replayWithinBudget(GestureScripts.rightBottom(WIDTH,HEIGHT));
+    }
+
+    @Test
+    public void horizontal() throws Exception {
+        replayWithinBudget(GestureScripts.horizontal(WIDTH,HEIGHT));
+    }
+
+    @Test
+    public void fastFlick() throws Exception {
+        replayWithinBudget(GestureScripts.fastFlick(WIDTH,HEIGHT));
+    }
+
+    @Test
+    public void slowDrag() throws Exception {
+        replayWithinBudget(GestureScripts.slowDrag(WIDTH,HEIGHT));
+    }
+
+    /**
+     * 每次甩动都在上一次的松手动画结束之前按下，三次甩动翻过三页，第三次进入快速翻阅
+     */
+    @Test
+    public void rapidFlicks_advanceOnePagePerFlick() throws Exception {
+        view.setScrubEnabled(true);
+        int start = view.getCurrentPage();
+        GestureReplay.replay(view,canvas,GestureScripts.rapidFlicks(WIDTH,HEIGHT,TurnScrub.RAPID_TURNS));
+        assertTrue(view.isAtRest());
+        assertEquals(start + TurnScrub.RAPID_TURNS,view.getCurrentPage());
+    }
+
+    private void replayWithinBudget(GestureLog script) throws Exception {
+        //经过文件再回放，和设备上录制的手势走同样的路径
+        File file = temporaryFolder.newFile(script.name() + ".gesture");
+        script.write(file);
+        GestureLog log = GestureLog.read(file);
+
+        GestureReplay.replay(view,canvas,log);
+        GestureReplay.Result result = GestureReplay.replay(view,canvas,log);
+        writeReport(result);
+
+        if (Boolean.getBoolean("gestureReplay.enforceFrameTime")){
+            assertWithinBudget(result,"frameP95Micros",result.frames.percentileMicros(95));
+        }
+        assertWithinBudget(result,"allocatedBytesPerFrame",result.allocatedBytesPerFrame());
+        assertWithinBudget(result,"bitmapsCreated",result.bitmapsCreated);
+    }
+
+    /**
+     * 把这次回放的统计写到报告目录下以手势命名的文件中，每次运行覆盖上一次的
+     */
+    private static void writeReport(GestureReplay.Result result) throws IOException {
+        File directory = new File(System.getProperty("gestureReplay.reportDir",DEFAULT_REPORT_DIR));
+        if (!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("cannot create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(new File(directory,result.name + ".txt")));
+        try {
+            writer.println(result);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 先找手势自己的预算，没有时用default，失败时带上这次回放的全部统计
+     */
+    private void assertWithinBudget(GestureReplay.Result result,String metric,long value){
+        String budget = budgets.getProperty(result.name + '.' + metric,budgets.getProperty("default." + metric));
+        assertNotNull("no budget for " + metric,budget);
+        long limit = Long.parseLong(budget.trim());
+        assertTrue(metric + '=' + value + " exceeds budget " + limit + " (" + result + ')',value <= limit);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.gaope.pageturning;
+
+import android.view.MotionEvent;
+
+/**
+ * 回放用的标准手势，和设备上录制的GestureLog格式相同
+ * 触摸屏每8ms一个采样，每个MOVE事件带一个历史采样，相当于120Hz的触摸屏和60Hz的刷新
+ */
+final class GestureScripts {
+
+    /**
+     * 两个采样之间的时间
+     */
+    private static final long SAMPLE_MILLIS = 8;
+
+    /**
+     * 每个MOVE事件中的采样数
+     */
+    private static final int SAMPLES_PER_EVENT = 2;
+
+    /**
+     * 连续甩动时两次按下之间的时间，比松手动画短
+     */
+    private static final long RAPID_FLICK_INTERVAL_MILLIS = 250;
+
+    private GestureScripts() {
+    }
+
+    /**
+     * 右上角翻过去
+     */
+    static GestureLog rightTop(int width,int height){
+        return drag("rightTop",width - 20,100,width * 0.2f,height * 0.25f,400);
+    }
+
+    /**
+     * 右下角拖到一半松手，回到原处
+     */
+    static GestureLog rightBottom(int width,int height){
+        return drag("rightBottom",width - 20,height - 100,width * 0.6f,height * 0.7f,500);
+    }
+
+    /**
+     * 从中间横向翻过去
+     */
+    static GestureLog horizontal(int width,int height){
+        return drag("horizontal",width - 20,height / 2f,width * 0.3f,height / 2f,400);
+    }
+
+    /**
+     * 快速向左甩动，距离不到一半也会翻过去
+     */
+    static GestureLog fastFlick(int width,int height){
+        return drag("fastFlick",width - 20,height - 100,width * 0.7f,height * 0.8f,80);
+    }
+
+    /**
+     * 连续count次快速甩动，每次在上一次松手动画结束之前按下
+     */
+    static GestureLog rapidFlicks(int width,int height,int count){
+        GestureLog log = new GestureLog("rapidFlicks");
+        for (int i = 0; i < count; i++) {
+            appendDrag(log,i * RAPID_FLICK_INTERVAL_MILLIS,width - 20,height - 100,width * 0.7f,height * 0.8f,80);
+        }
+        return log;
+    }
+
+    /**
+     * 慢慢拖到左边
+     */
+    static GestureLog slowDrag(int width,int height){
+        return drag("slowDrag",width - 20,150,width * 0.1f,height * 0.4f,2000);
+    }
+
+    /**
+     * 从(x0,y0)匀速拖到(x1,y1)后松手
+     */
+    private static GestureLog drag(String name,float x0,float y0,float x1,float y1,long durationMillis){
+        GestureLog log = new GestureLog(name);
+        appendDrag(log,0,x0,y0,x1,y1,durationMillis);
+        return log;
+    }
+
+    /**
+     * 在startMillis按下，从(x0,y0)匀速拖到(x1,y1)后松手
+     */
+    private static void appendDrag(GestureLog log,long startMillis,float x0,float y0,float x1,float y1,long durationMillis){
+        log.beginEvent(MotionEvent.ACTION_DOWN);
+        log.addSample(startMillis,x0,y0);
+        int steps = (int) (durationMillis / SAMPLE_MILLIS);
+        for (int step = 1; step <= steps; step++) {
+            if ((step - 1) % SAMPLES_PER_EVENT == 0){
+                log.beginEvent(MotionEvent.ACTION_MOVE);
+            }
+            float fraction = (float) step / steps;
+            log.addSample(startMillis + step * SAMPLE_MILLIS,x0 + (x1 - x0) * fraction,y0 + (y1 - y0) * fraction);
+        }
+        log.beginEvent(MotionEvent.ACTION_UP);
+        log.addSample(startMillis + (steps + 1) * SAMPLE_MILLIS,x1,y1);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ImagePageProvider中缩小倍数和小块编号的本地单元测试
+ */
+public class ImagePageProviderTest {
+
+    @Test
+    public void sampleSize_neverSmallerThanDisplayed() throws Exception {
+        //按宽缩放0.27，缩小2倍之后2000×3000仍然大于显示的1080×1620
+        assertEquals(2,ImagePageProvider.sampleSize(4000,6000,1080,1920));
+        //刚好是4倍
+        assertEquals(4,ImagePageProvider.sampleSize(4320,7680,1080,1920));
+        assertEquals(2,ImagePageProvider.sampleSize(4319,7679,1080,1920));
+    }
+
+    @Test
+    public void sampleSize_smallImage() throws Exception {
+        assertEquals(1,ImagePageProvider.sampleSize(800,600,1080,1920));
+        assertEquals(1,ImagePageProvider.sampleSize(0,0,1080,1920));
+        assertEquals(1,ImagePageProvider.sampleSize(4000,6000,0,0));
+    }
+
+    @Test
+    public void tileKey_distinctPerPageSampleAndTile() throws Exception {
+        long key = ImagePageProvider.tileKey(3,2,5);
+        assertNotEquals(key,ImagePageProvider.tileKey(4,2,5));
+        assertNotEquals(key,ImagePageProvider.tileKey(3,4,5));
+        assertNotEquals(key,ImagePageProvider.tileKey(3,2,6));
+        assertEquals(key,ImagePageProvider.tileKey(3,2,5));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram的本地单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketUpperBound_coversValue() throws Exception {
+        for (long micros = 0; micros < 1000000; micros += 997) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) >= micros);
+            //相对误差不超过12.5%
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) <= micros + micros / 8 + 1);
+        }
+    }
+
+    @Test
+    public void percentiles_andJankCount() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+
+        assertEquals(100,histogram.count());
+        assertEquals(100000,histogram.maxMicros());
+        //17ms到100ms
+        assertEquals(84,histogram.overBudget());
+        assertEquals(50000,histogram.percentileMicros(50),50000 / 8);
+        assertEquals(99000,histogram.percentileMicros(99),99000 / 8);
+
+        histogram.reset();
+        assertEquals(0,histogram.count());
+        assertEquals(0,histogram.percentileMicros(50));
+    }
+}
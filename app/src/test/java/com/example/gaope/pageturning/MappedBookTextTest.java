@@ -0,0 +1,69 @@
+package com.example.gaope.pageturning;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * MappedBookText的本地单元测试，文字比一个解码窗口长，窗口的边界会落在多字节字符中间
+ */
+public class MappedBookTextTest {
+
+    private File file;
+
+    private String text;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("book",".txt");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            builder.append("第").append(i).append("行 line😀\n");
+        }
+        text = builder.toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void utf8_pagesMatchText() throws Exception {
+        assertPagesMatchText(Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void gbk_pagesMatchText() throws Exception {
+        //GBK中没有表情，只用中文和英文
+        text = text.replace("😀","啊");
+        assertPagesMatchText(Charset.forName("GBK"));
+    }
+
+    private void assertPagesMatchText(Charset charset) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes(charset));
+        out.close();
+
+        MappedBookText book = new MappedBookText(file,charset);
+        Paginator paginator = new Paginator(book,PaginatorTest.MEASURER,7,13);
+        PageIndex index = paginator.layoutAll();
+
+        //按页拼起来和原文相同，每一页的起始位置都是完整字符的字节偏移
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < index.count - 1; i++) {
+            TextPage page = paginator.page(i);
+            assertEquals(index.starts[i],page.start);
+            assertEquals(new String(text.getBytes(charset),0,page.start,charset).length(),joined.length());
+            joined.append(page.text);
+        }
+        assertEquals(text,joined.toString());
+        assertEquals(file.length(),index.starts[index.count - 1]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.gaope.pageturning;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * PageIndexStore的本地单元测试
+ */
+public class PageIndexStoreTest {
+
+    private File directory;
+
+    private PageIndexStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("page_index","");
+        directory.delete();
+        store = new PageIndexStore(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.release();
+        File[] files = directory.listFiles();
+        if (files != null){
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void saveAndLoad_roundTrip() throws Exception {
+        Paginator paginator = new Paginator(new PaginatorTest.CountingBook(100000),PaginatorTest.MEASURER,30,20);
+        PageIndex built = paginator.layoutAll();
+        String key = PageIndexStore.layoutKey("book","0/1.0",30,30,20);
+        store.save(key,built);
+
+        PageIndex loaded = store.load(key);
+        assertNotNull(loaded);
+        assertTrue(loaded.complete);
+        assertEquals(built.count,loaded.count);
+        for (int i = 0; i < built.count; i++) {
+            assertEquals(built.starts[i],loaded.starts[i]);
+        }
+        //每一页600个字符，长度只需要两个字节
+        File[] files = directory.listFiles();
+        assertEquals(1,files.length);
+        assertTrue(files[0].length() < 64 + built.count * 2);
+
+        assertNull(store.load(PageIndexStore.layoutKey("book","0/1.0",31,30,20)));
+    }
+
+    @Test
+    public void load_corruptedCount_returnsNull() throws Exception {
+        Paginator paginator = new Paginator(new PaginatorTest.CountingBook(10000),PaginatorTest.MEASURER,30,20);
+        String key = PageIndexStore.layoutKey("book","0/1.0",30,30,20);
+        store.save(key,paginator.layoutAll());
+
+        //把页数改成Integer.MAX_VALUE：魔数、版本、UTF的key、是否完整之后就是页数
+        File file = directory.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file,"rw");
+        try {
+            raf.seek(4 + 1 + 2 + key.length() + 1);
+            raf.write(new byte[]{(byte) 0xff,(byte) 0xff,(byte) 0xff,(byte) 0xff,0x07});
+        } finally {
+            raf.close();
+        }
+        assertNull(store.load(key));
+    }
+
+    @Test
+    public void loadOrBuild_restoresLivePaginator() throws Exception {
+        PaginatorTest.CountingBook book = new PaginatorTest.CountingBook(50000);
+        String key = PageIndexStore.layoutKey(book.fingerprint(),"0/1.0",10,10,10);
+        Paginator live = new Paginator(book,PaginatorTest.MEASURER,10,10);
+        store.loadOrBuild(key,live,new Paginator(book,PaginatorTest.MEASURER,10,10)).get();
+        assertEquals(500,live.pageCount());
+
+        //第二次打开时直接读取索引，跳页时只打开一次书
+        PaginatorTest.CountingBook reopened = new PaginatorTest.CountingBook(50000);
+        Paginator next = new Paginator(reopened,PaginatorTest.MEASURER,10,10);
+        store.loadOrBuild(key,next,new Paginator(reopened,PaginatorTest.MEASURER,10,10)).get();
+        assertEquals(500,next.pageCount());
+        assertEquals(0,reopened.opened);
+        assertEquals(40000,next.page(400).start);
+        assertEquals(1,reopened.opened);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Paginator的本地单元测试，每个字符宽度为1
+ */
+public class PaginatorTest {
+
+    static final TextMeasurer MEASURER = new TextMeasurer() {
+        @Override
+        public int breakText(char[] text, int start, int end, float maxWidth) {
+            return Math.min(end - start,(int) maxWidth);
+        }
+
+        @Override
+        public float lineHeight() {
+            return 1;
+        }
+    };
+
+    @Test
+    public void pages_coverTextContiguously() throws Exception {
+        final String text = "abcdefghij\nklm\r\n\nnopqrstuvwxyz";
+        Paginator paginator = new Paginator(stringBook(text),MEASURER,4,2);
+
+        StringBuilder lines = new StringBuilder();
+        int expectedStart = 0;
+        TextPage page;
+        for (int i = 0; (page = paginator.page(i)) != null; i++) {
+            assertEquals(expectedStart,page.start);
+            for (int line = 0; line < page.lineCount; line++) {
+                lines.append(page.text,page.lineStart(line),page.lineEnd(line) - page.lineStart(line)).append('|');
+            }
+            expectedStart = page.end;
+        }
+        assertEquals(text.length(),expectedStart);
+        assertEquals("abcd|efgh|ij|klm||nopq|rstu|vwxy|z|",lines.toString());
+        assertEquals(5,paginator.pageCount());
+        assertNull(paginator.page(5));
+    }
+
+    @Test
+    public void firstPage_readsOnlyWhatItNeeds() throws Exception {
+        CountingBook book = new CountingBook(10000000);
+        Paginator paginator = new Paginator(book,MEASURER,40,20);
+
+        TextPage page = paginator.page(0);
+        assertEquals(800,page.end);
+        assertTrue(book.read < 100000);
+        assertEquals(-1,paginator.pageCount());
+    }
+
+    @Test
+    public void close_stopsLayoutAndReading() throws Exception {
+        CountingBook book = new CountingBook(100000);
+        Paginator paginator = new Paginator(book,MEASURER,10,10);
+        paginator.page(0);
+        paginator.close();
+        long read = book.read;
+
+        assertNull(paginator.page(50));
+        assertEquals(read,book.read);
+        assertEquals(1,paginator.laidOutPages());
+    }
+
+    @Test
+    public void pageBack_reopensAtPageStart() throws Exception {
+        CountingBook book = new CountingBook(100000);
+        Paginator paginator = new Paginator(book,MEASURER,10,10);
+
+        TextPage forward = paginator.page(20);
+        assertEquals(2000,forward.start);
+        TextPage back = paginator.page(1);
+        assertEquals(100,back.start);
+        assertEquals(2,book.opened);
+        assertEquals(back.text[0],forward.text[0]);
+    }
+
+    static BookText stringBook(final String text){
+        return new BookText() {
+            @Override
+            public BookReader open(int position) throws IOException {
+                return new CharBookReader(new StringReader(text),position);
+            }
+
+            @Override
+            public String fingerprint() {
+                return Integer.toHexString(text.hashCode());
+            }
+        };
+    }
+
+    /**
+     * 没有换行的长文本，记录读取的字符数和打开的次数
+     */
+    static class CountingBook implements BookText {
+
+        private final int length;
+
+        int read;
+
+        int opened;
+
+        CountingBook(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public BookReader open(int position) throws IOException {
+            opened++;
+            return new CharBookReader(new Reader() {
+                private int offset;
+
+                @Override
+                public int read(char[] cbuf, int off, int len) throws IOException {
+                    if (offset == length){
+                        return -1;
+                    }
+                    int n = Math.min(len,length - offset);
+                    for (int i = 0; i < n; i++) {
+                        cbuf[off + i] = (char) ('a' + (offset + i) % 10);
+                    }
+                    offset += n;
+                    read += n;
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                }
+            },position);
+        }
+
+        @Override
+        public String fingerprint() {
+            return "counting:" + length;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * QualityGovernor的本地单元测试
+ */
+public class QualityGovernorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void fastFrames_keepFullQuality() throws Exception {
+        QualityGovernor governor = new QualityGovernor();
+        for (int i = 0; i < 100; i++) {
+            governor.record(i == 0 ? 40 * MS : 6 * MS,false);
+        }
+        //第一帧的栅格化不会导致降级
+        assertFalse(governor.isDegraded());
+    }
+
+    @Test
+    public void slowFrames_degradeThenRecover() throws Exception {
+        QualityGovernor governor = new QualityGovernor();
+        int frames = 0;
+        while (!governor.isDegraded()){
+            governor.record(20 * MS,false);
+            frames++;
+        }
+        assertEquals(QualityGovernor.WARMUP_FRAMES,frames);
+
+        //降级后估算的全质量耗时仍然在两个阈值之间，保持降级
+        for (int i = 0; i < 20; i++) {
+            governor.record(3 * MS,true);
+        }
+        assertTrue(governor.isDegraded());
+
+        //设备变快之后恢复
+        for (int i = 0; i < 40; i++) {
+            governor.record(MS,true);
+        }
+        assertFalse(governor.isDegraded());
+
+        governor.reset();
+        assertFalse(governor.isDegraded());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TouchPredictor的本地单元测试
+ */
+public class TouchPredictorTest {
+
+    @Test
+    public void linearMotion_velocityAndPrediction() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        //每4毫秒向左移动8像素，向下移动2像素
+        for (int i = 0; i < 10; i++) {
+            predictor.addSample(1000 + i * 4,600 - i * 8,300 + i * 2);
+        }
+        assertEquals(-2f,predictor.velocityX(),1e-3f);
+        assertEquals(0.5f,predictor.velocityY(),1e-3f);
+
+        float[] point = new float[2];
+        predictor.predict(8,point);
+        assertEquals(600 - 9 * 8 - 16,point[0],1e-2f);
+        assertEquals(300 + 9 * 2 + 4,point[1],1e-2f);
+
+        //预测的距离有上限
+        predictor.predict(1000,point);
+        float distance = (float) Math.hypot(point[0] - (600 - 9 * 8),point[1] - (300 + 9 * 2));
+        assertTrue(distance <= TouchPredictor.MAX_PREDICTION_DISTANCE + 1e-3f);
+    }
+
+    @Test
+    public void staleSamples_ignored() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.addSample(0,0,0);
+        predictor.addSample(10,100,0);
+        //手指停下很久之后再动，旧的采样不参与估计
+        predictor.addSample(500,100,0);
+        assertEquals(0f,predictor.velocityX(),1e-6f);
+
+        predictor.reset();
+        float[] point = {7,7};
+        predictor.predict(8,point);
+        assertEquals(7f,point[0],0f);
+        assertEquals(0,predictor.sampleCount());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TurnScrub的本地单元测试
+ */
+public class TurnScrubTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void rapidTurns_triggerOnlyWhenConsecutive() throws Exception {
+        TurnScrub scrub = new TurnScrub();
+        assertFalse(scrub.onTurnCompleted(0));
+        assertFalse(scrub.onTurnCompleted(300 * MS));
+        assertTrue(scrub.onTurnCompleted(600 * MS));
+
+        //隔得太久重新计数
+        assertFalse(scrub.onTurnCompleted(2000 * MS));
+        assertFalse(scrub.onTurnCompleted(2300 * MS));
+    }
+
+    @Test
+    public void drag_snapsToNearestPageThenStops() throws Exception {
+        TurnScrub scrub = new TurnScrub();
+        scrub.start(5,-1,0);
+        scrub.beginDrag(100,10);
+        scrub.drag(133);
+        scrub.endDrag(0);
+        assertEquals(8,scrub.targetPage());
+
+        long t = 0;
+        while (scrub.update(t)){
+            assertTrue(scrub.rate() <= TurnScrub.MAX_RATE + 1e-3f);
+            t += 16 * MS;
+            assertTrue("never stopped",t < 5000 * MS);
+        }
+        assertFalse(scrub.isActive());
+        assertEquals(8,scrub.page());
+        assertEquals(0f,scrub.fraction(),0f);
+        //停下之后还要等一会儿，期间可以接着翻
+        assertTrue(t >= TurnScrub.RAPID_TURN_NANOS);
+    }
+
+    @Test
+    public void farTarget_limitedToMaxRate() throws Exception {
+        TurnScrub scrub = new TurnScrub();
+        scrub.start(0,-1,0);
+        scrub.beginDrag(0,1);
+        scrub.drag(1000);
+        for (long t = 16 * MS; t <= 1000 * MS; t += 16 * MS) {
+            scrub.update(t);
+        }
+        assertTrue(scrub.isActive());
+        assertTrue(scrub.page() <= TurnScrub.MAX_RATE);
+        assertTrue(scrub.page() >= TurnScrub.MAX_RATE * 0.9f);
+    }
+
+    @Test
+    public void target_clampedToPageCount() throws Exception {
+        TurnScrub scrub = new TurnScrub();
+        scrub.start(2.5f,5,0);
+        scrub.turn(1);
+        assertEquals(3,scrub.targetPage());
+        scrub.beginDrag(0,1);
+        scrub.drag(100);
+        assertEquals(4,scrub.targetPage());
+        scrub.drag(-100);
+        assertEquals(0,scrub.targetPage());
+        assertTrue(scrub.isBackward());
+
+        scrub.cancel();
+        assertFalse(scrub.isActive());
+        assertEquals(3,scrub.page());
+    }
+}
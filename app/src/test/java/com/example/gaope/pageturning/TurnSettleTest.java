@@ -0,0 +1,68 @@
+package com.example.gaope.pageturning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TurnSettle的本地单元测试
+ */
+public class TurnSettleTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void shouldComplete_flingThenPosition() throws Exception {
+        //甩动优先
+        assertTrue(TurnSettle.shouldComplete(900,1080,-2000,150));
+        assertFalse(TurnSettle.shouldComplete(100,1080,2000,150));
+        //速度不够时看位置
+        assertTrue(TurnSettle.shouldComplete(400,1080,100,150));
+        assertFalse(TurnSettle.shouldComplete(700,1080,-100,150));
+    }
+
+    @Test
+    public void settle_reachesTargetAndStops() throws Exception {
+        TurnSettle settle = new TurnSettle();
+        settle.start(800,200,0,0,-1080,1);
+        assertTrue(settle.isRunning());
+
+        //位置只取决于时间，不同的刷新率在同一时刻得到同样的位置
+        TurnSettle fast = new TurnSettle();
+        fast.start(800,200,0,0,-1080,1);
+        for (long t = 0; t <= 96 * MS; t += 8 * MS) {
+            fast.update(t);
+        }
+        settle.update(96 * MS);
+        assertEquals(settle.x(),fast.x(),1e-3f);
+        assertTrue(settle.x() < 800 && settle.x() > -1080);
+
+        long t = 96 * MS;
+        while (settle.update(t)){
+            t += 16 * MS;
+            assertTrue("never settled",t < 5000 * MS);
+        }
+        assertFalse(settle.isRunning());
+        assertEquals(-1080f,settle.x(),0f);
+        assertEquals(1f,settle.y(),0f);
+    }
+
+    @Test
+    public void flingVelocity_speedsUpSettle() throws Exception {
+        TurnSettle still = new TurnSettle();
+        still.start(800,200,0,0,-1080,1);
+        TurnSettle flung = new TurnSettle();
+        flung.start(800,200,-5000,0,-1080,1);
+        still.update(50 * MS);
+        flung.update(50 * MS);
+        assertTrue(flung.x() < still.x());
+
+        //再快也不会越过目标
+        TurnSettle overshoot = new TurnSettle();
+        overshoot.start(1000,100,50000,-50000,1079,-1);
+        for (long t = 0; overshoot.update(t); t += 4 * MS) {
+            assertTrue(overshoot.x() <= 1079);
+            assertTrue(overshoot.y() >= -1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.gaope.pageturning;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.example.gaope.pageturning.CurlGeometry.A;
+import static com.example.gaope.pageturning.CurlGeometry.C;
+import static com.example.gaope.pageturning.CurlGeometry.E;
+import static com.example.gaope.pageturning.CurlGeometry.F;
+import static com.example.gaope.pageturning.CurlGeometry.H;
+import static com.example.gaope.pageturning.CurlGeometry.J;
+
+/**
+ * 翻页热路径上的计算：
+ * touchMove对应onTouchEvent中的几何计算，
+ * legacyReflection、legacyShadow是原来drawPathCText、drawBShadow、drawCShadow中每一帧的写法，用来对比，
+ * buildRegionA、buildRegionC对应drawARightTop、drawARightBottom、drawC中Path的构建，
+ * meshUpdate对应网格绘制中每一帧的顶点计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CurlGeometryBenchmark {
+
+    @Param({"720x1280","1080x1920","1440x2560"})
+    public String screen;
+
+    @Param({GestureSweep.RIGHT_TOP,GestureSweep.RIGHT_BOTTOM,GestureSweep.HORIZONTAL})
+    public String direction;
+
+    private GestureSweep sweep;
+
+    private CurlGeometry curl;
+
+    private RecordingPath path;
+
+    private CurlMesh mesh;
+
+    private int index;
+
+    @Setup
+    public void setUp(){
+        sweep = new GestureSweep(screen,direction);
+        curl = new CurlGeometry();
+        path = new RecordingPath();
+        mesh = new CurlMesh(24,32);
+        curl.set(F,sweep.fx,sweep.fy);
+        //先算一次，让buildRegion系列有合法的点
+        touchMove();
+    }
+
+    /**
+     * 与PageTurnView#updateCurl中的计算相同
+     */
+    @Benchmark
+    public CurlGeometry touchMove(){
+        int i = next();
+        float x = sweep.xs[i];
+        float y = sweep.ys[i];
+        if (sweep.horizontal()){
+            curl.set(A,x,sweep.height - 3);
+            curl.set(F,sweep.width,sweep.height);
+        }else {
+            curl.set(A,x,y);
+        }
+        float cx = curl.calculateCX(curl.x(A),curl.y(A));
+        if (cx < 0){
+            curl.set(C,cx,curl.y(F));
+            curl.calculateCrisisA(sweep.width);
+        }
+        curl.calculate();
+        return curl;
+    }
+
+    /**
+     * 原来onTouchEvent中的计算，每个事件最多完整计算三次
+     */
+    @Benchmark
+    public CurlGeometry legacyTouchMove(){
+        int i = next();
+        float x = sweep.xs[i];
+        float y = sweep.ys[i];
+        curl.set(A,x,y);
+        curl.calculate();
+        if (curl.calculateCX(x,y) < 0){
+            curl.calculateCrisisA(sweep.width);
+            curl.calculate();
+        }
+        if (sweep.horizontal()){
+            curl.set(A,curl.x(A),sweep.height - 3);
+            curl.set(F,sweep.width,sweep.height);
+            curl.calculate();
+        }
+        return curl;
+    }
+
+    /**
+     * 原来drawPathCText中镜像矩阵的写法，每一帧分配float[]，原来还会分配一个Matrix，这里没有Android无法包含
+     */
+    @Benchmark
+    public void legacyReflection(Blackhole blackhole){
+        float ex = curl.x(E);
+        float hy = curl.y(H);
+        float fx = curl.x(F);
+        float fy = curl.y(F);
+        float ef = (float) Math.hypot(fx - ex,hy - fy);
+        float sina = (fx - ex) / ef;
+        float cosa = (hy - fy) / ef;
+        float tana = sina / cosa;
+        float a = (float) Math.atan(tana);
+        float[] matrixValue = { 0, 0, 0, 0, 0 ,0, 0, 0, 1.0f };
+        matrixValue[0] = -(1 - 2 * sina * sina);
+        matrixValue[1] = 2 * sina * cosa;
+        matrixValue[3] = 2 * sina * cosa;
+        matrixValue[4] = 1 - 2 * sina * sina;
+        blackhole.consume(a);
+        blackhole.consume(matrixValue);
+    }
+
+    /**
+     * 原来drawBShadow、drawCShadow中每一帧的阴影计算
+     */
+    @Benchmark
+    public void legacyShadow(Blackhole blackhole){
+        float aAndFLength = (float) Math.hypot(curl.x(A) - curl.x(F),curl.y(A) - curl.y(F));
+        float diagonalLength = (float) Math.hypot(sweep.width,sweep.height);
+        float rotateDegress = (float) Math.toDegrees(Math.atan2(curl.x(E) - curl.x(F),curl.y(H) - curl.y(F)));
+        int midpoint_ce = (int) (curl.x(C) + curl.x(E)) / 2;
+        int midpoint_jh = (int) (curl.y(J) + curl.y(H)) / 2;
+        float minDisToControlPoint = Math.min(Math.abs(midpoint_ce - curl.x(E)), Math.abs(midpoint_jh - curl.y(H)));
+        blackhole.consume(aAndFLength);
+        blackhole.consume(diagonalLength);
+        blackhole.consume(rotateDegress);
+        blackhole.consume(minDisToControlPoint);
+    }
+
+    @Benchmark
+    public RecordingPath buildRegionA(){
+        path.reset();
+        if (curl.y(F) == 0){
+            curl.buildRegionARightTop(path,sweep.width,sweep.height);
+        }else {
+            curl.buildRegionARightBottom(path,sweep.width,sweep.height);
+        }
+        return path;
+    }
+
+    @Benchmark
+    public RecordingPath buildRegionC(){
+        path.reset();
+        curl.buildRegionC(path);
+        return path;
+    }
+
+    /**
+     * 整个手势中的一帧：几何计算加上A、C区域的轮廓
+     */
+    @Benchmark
+    public RecordingPath frame(){
+        touchMove();
+        buildRegionA();
+        curl.buildRegionC(path);
+        return path;
+    }
+
+    /**
+     * PageTurnView默认网格密度下的顶点和颜色计算
+     */
+    @Benchmark
+    public CurlMesh meshUpdate(){
+        mesh.update(curl,sweep.width,sweep.height);
+        return mesh;
+    }
+
+    private int next(){
+        int i = index;
+        index = (i + 1) % GestureSweep.SAMPLES;
+        return i;
+    }
+}
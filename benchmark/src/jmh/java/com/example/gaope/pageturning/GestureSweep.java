@@ -0,0 +1,80 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 基准测试使用的手势轨迹，模拟一次完整的拖动，按照PageTurnView的三种翻页方式生成
+ */
+final class GestureSweep {
+
+    static final String RIGHT_TOP = "RIGHT_TOP";
+
+    static final String RIGHT_BOTTOM = "RIGHT_BOTTOM";
+
+    static final String HORIZONTAL = "HORIZONTAL";
+
+    /**
+     * 一次拖动的采样点数，大约是60fps下1秒的拖动
+     */
+    static final int SAMPLES = 64;
+
+    final int width;
+
+    final int height;
+
+    final String direction;
+
+    final float[] xs = new float[SAMPLES];
+
+    final float[] ys = new float[SAMPLES];
+
+    /**
+     * 边缘点f的坐标
+     */
+    final float fx;
+
+    final float fy;
+
+    /**
+     * @param screen 屏幕尺寸，格式为"宽x高"
+     */
+    GestureSweep(String screen,String direction) {
+        int split = screen.indexOf('x');
+        this.width = Integer.parseInt(screen.substring(0,split));
+        this.height = Integer.parseInt(screen.substring(split + 1));
+        this.direction = direction;
+
+        float startX = width * 0.95f;
+        float endX = width * 0.05f;
+        float startY;
+        float endY;
+        if (RIGHT_TOP.equals(direction)){
+            startY = height * 0.05f;
+            endY = height * 0.3f;
+            fx = width;
+            fy = 0;
+        }else if (RIGHT_BOTTOM.equals(direction)){
+            startY = height * 0.95f;
+            endY = height * 0.7f;
+            fx = width;
+            fy = height;
+        }else if (HORIZONTAL.equals(direction)){
+            startY = height * 0.5f;
+            endY = height * 0.5f;
+            fx = width;
+            fy = height;
+        }else {
+            throw new IllegalArgumentException("unknown direction: " + direction);
+        }
+
+        //手指先加速后减速，用smoothstep模拟
+        for (int i = 0; i < SAMPLES; i++) {
+            float t = (float) i / (SAMPLES - 1);
+            float s = t * t * (3 - 2 * t);
+            xs[i] = startX + (endX - startX) * s;
+            ys[i] = startY + (endY - startY) * s;
+        }
+    }
+
+    boolean horizontal(){
+        return HORIZONTAL.equals(direction);
+    }
+}
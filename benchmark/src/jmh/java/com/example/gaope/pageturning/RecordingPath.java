@@ -0,0 +1,55 @@
+package com.example.gaope.pageturning;
+
+/**
+ * 把路径命令记录到预先分配的数组中，代替android.graphics.Path，记录本身不分配对象
+ */
+final class RecordingPath implements CurlGeometry.PathSink {
+
+    static final float MOVE = 0;
+
+    static final float LINE = 1;
+
+    static final float QUAD = 2;
+
+    static final float CLOSE = 3;
+
+    private final float[] commands = new float[128];
+
+    private int size;
+
+    void reset(){
+        size = 0;
+    }
+
+    int size(){
+        return size;
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        commands[size++] = MOVE;
+        commands[size++] = x;
+        commands[size++] = y;
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        commands[size++] = LINE;
+        commands[size++] = x;
+        commands[size++] = y;
+    }
+
+    @Override
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        commands[size++] = QUAD;
+        commands[size++] = x1;
+        commands[size++] = y1;
+        commands[size++] = x2;
+        commands[size++] = y2;
+    }
+
+    @Override
+    public void close() {
+        commands[size++] = CLOSE;
+    }
+}